@@ -0,0 +1,136 @@
+package com.example.benchmark;
+
+import com.example.vulnerable.model.AuthToken;
+import com.example.vulnerable.model.User;
+import com.example.vulnerable.service.AuthTokenService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'authentification par requête.
+ *
+ * verifyToken : AuthTokenService.verify (Mac en cache par thread, deux
+ * filtres de Bloom remplis de {@code revoked} révocations) ;
+ * verifyTokenNewMac : même HMAC avec Mac.getInstance + init à chaque appel ;
+ * sessionLookup : ce que fait le conteneur en mode session (table des
+ * sessions par identifiant, puis lecture de userId et role) sur
+ * {@code sessions} sessions en mémoire.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class AuthTokenBenchmark {
+
+    @Param("100000")
+    public int revoked;
+
+    @Param("1000000")
+    public int sessions;
+
+    private AnnotationConfigApplicationContext context;
+
+    private AuthTokenService authTokens;
+
+    private String token;
+
+    private SecretKeySpec key;
+
+    private String[] sessionIds;
+
+    private final Map<String, Map<String, Object>> sessionTable = new ConcurrentHashMap<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("app.auth.stateless.enabled", "true");
+        properties.put("app.auth.token.secret", "benchmark-secret");
+        properties.put("app.auth.token.revocation.expected-insertions", String.valueOf(revoked));
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        context.register(AuthTokenService.class);
+        context.refresh();
+        authTokens = context.getBean(AuthTokenService.class);
+
+        User user = new User();
+        user.setId(42L);
+        user.setRole("USER");
+        for (int i = 0; i < revoked; i++) {
+            authTokens.revoke(new AuthToken(42L, "USER", ThreadLocalRandom.current().nextLong(), 0));
+        }
+        token = authTokens.issue(user);
+        key = new SecretKeySpec("benchmark-secret".getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+
+        sessionIds = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            Map<String, Object> attributes = new ConcurrentHashMap<>();
+            attributes.put("userId", (long) i);
+            attributes.put("role", "USER");
+            sessionIds[i] = UUID.randomUUID().toString();
+            sessionTable.put(sessionIds[i], attributes);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AuthToken verifyToken() {
+        return authTokens.verify(token);
+    }
+
+    @Benchmark
+    public byte[] verifyTokenNewMac() throws GeneralSecurityException {
+        int dot = token.indexOf('.');
+        byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, dot));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(key);
+        return mac.doFinal(payload);
+    }
+
+    @Benchmark
+    public Object sessionLookup() {
+        Map<String, Object> attributes = sessionTable.get(sessionIds[ThreadLocalRandom.current().nextInt(sessions)]);
+        attributes.get("role");
+        return attributes.get("userId");
+    }
+
+    @Benchmark
+    public String issueToken() {
+        User user = new User();
+        user.setId(42L);
+        user.setRole("USER");
+        return authTokens.issue(user);
+    }
+}
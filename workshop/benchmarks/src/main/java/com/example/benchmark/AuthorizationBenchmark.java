@@ -0,0 +1,157 @@
+package com.example.benchmark;
+
+import com.example.secure.config.CompiledAccessRules;
+import com.example.secure.model.Role;
+import com.example.secure.service.CustomUserDetails;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.SecurityConfig;
+import org.springframework.security.access.vote.AffirmativeBased;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.access.expression.DefaultWebSecurityExpressionHandler;
+import org.springframework.security.web.access.expression.ExpressionBasedFilterInvocationSecurityMetadataSource;
+import org.springframework.security.web.access.expression.WebExpressionVoter;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
+import org.springframework.security.web.access.intercept.RequestMatcherDelegatingAuthorizationManager;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import javax.servlet.Filter;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût par requête de l'autorisation des URL de SecurityConfig (solutions).
+ *
+ * interceptor : authorizeRequests() tel qu'avant, FilterSecurityInterceptor
+ * sur la liste d'antMatchers et les expressions SpEL (WebExpressionVoter) ;
+ * compiled : authorizeHttpRequests() avec CompiledAccessRules (arbre de
+ * segments, rôles en bits). Chaque appel traverse le filtre avec une requête
+ * neuve, sur des chemins publics, authentifiés et admin (utilisateur admin :
+ * aucun refus, donc aucune exception dans la mesure).
+ *
+ * adminCheckAuthorities / adminCheckBits : SecureTransferService.isCurrentUserAdmin
+ * avant (parcours des autorités) et après (bit du masque de CustomUserDetails).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Thread)
+public class AuthorizationBenchmark {
+
+    private static final String[] PATHS = {
+            "/css/app.css", "/login", "/dashboard", "/api/transactions/42",
+            "/api/users/1234/statement", "/admin/users", "/api/admin/stats", "/api/health"
+    };
+
+    private Filter interceptor;
+
+    private Filter compiled;
+
+    private Authentication authentication;
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        CustomUserDetails principal = new CustomUserDetails(42L, "admin", "",
+                Role.USER.bit() | Role.ADMIN.bit(), true, false);
+        authentication = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        // Mêmes règles, dans le même ordre, que SecurityConfig
+        LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> rules = new LinkedHashMap<>();
+        for (String pattern : new String[]{"/", "/login", "/register", "/css/**", "/js/**", "/images/**",
+                "/api/public/**", "/api/health"}) {
+            rules.put(new AntPathRequestMatcher(pattern), SecurityConfig.createList("permitAll"));
+        }
+        rules.put(new AntPathRequestMatcher("/admin/**"), SecurityConfig.createList("hasRole('ADMIN')"));
+        rules.put(new AntPathRequestMatcher("/api/admin/**"), SecurityConfig.createList("hasRole('ADMIN')"));
+        rules.put(AnyRequestMatcher.INSTANCE, SecurityConfig.createList("authenticated"));
+
+        FilterSecurityInterceptor filterSecurityInterceptor = new FilterSecurityInterceptor();
+        filterSecurityInterceptor.setSecurityMetadataSource(
+                new ExpressionBasedFilterInvocationSecurityMetadataSource(rules, new DefaultWebSecurityExpressionHandler()));
+        filterSecurityInterceptor.setAccessDecisionManager(new AffirmativeBased(List.of(new WebExpressionVoter())));
+        filterSecurityInterceptor.setAuthenticationManager(auth -> auth);
+        filterSecurityInterceptor.afterPropertiesSet();
+        interceptor = filterSecurityInterceptor;
+
+        // Ce que construit authorizeHttpRequests().anyRequest().access(accessRules())
+        CompiledAccessRules accessRules = new CompiledAccessRules()
+                .permitAll("/", "/login", "/register", "/css/**", "/js/**", "/images/**")
+                .permitAll("/api/public/**")
+                .permitAll("/api/health")
+                .hasRole(Role.ADMIN, "/admin/**")
+                .hasRole(Role.ADMIN, "/api/admin/**");
+        compiled = new AuthorizationFilter(RequestMatcherDelegatingAuthorizationManager.builder()
+                .add(AnyRequestMatcher.INSTANCE, accessRules)
+                .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public Object interceptor() throws IOException, ServletException {
+        return filter(interceptor);
+    }
+
+    @Benchmark
+    public Object compiled() throws IOException, ServletException {
+        return filter(compiled);
+    }
+
+    @Benchmark
+    public boolean adminCheckAuthorities() {
+        Authentication current = SecurityContextHolder.getContext().getAuthentication();
+        return current != null
+                && current.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    }
+
+    @Benchmark
+    public boolean adminCheckBits() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return ((CustomUserDetails) principal).hasRole(Role.ADMIN);
+    }
+
+    private Object filter(Filter filter) throws IOException, ServletException {
+        String path = PATHS[next++ & (PATHS.length - 1)];
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        // Refus : AccessDeniedException, pas de requête transmise
+        return chain.getRequest();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.benchmark;
+
+import com.example.vulnerable.VulnerableBankApplication;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contexte Spring de VulnerableBank sur une base H2 embarquée peuplée
+ * de {@code users} utilisateurs et {@code transactions} transactions.
+ *
+ * Les volumes se réduisent pour un essai rapide : -p users=10000 -p transactions=100000
+ */
+@State(Scope.Benchmark)
+public class BankState {
+
+    @Param("1000000")
+    public int users;
+
+    @Param("10000000")
+    public int transactions;
+
+    protected ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(VulnerableBankApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments().toArray(new String[0]));
+        seed(context.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Arguments de ligne de commande : ils priment sur application.properties.
+     */
+    protected List<String> arguments() {
+        List<String> args = new ArrayList<>();
+        args.add("--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        args.add("--spring.sql.init.mode=never");
+        args.add("--spring.jpa.show-sql=false");
+        args.add("--spring.h2.console.enabled=false");
+        args.add("--logging.level.root=WARN");
+        args.add("--logging.level.org.springframework=WARN");
+        args.add("--logging.level.org.hibernate.SQL=WARN");
+        args.add("--logging.level.com.example.vulnerable=WARN");
+        return args;
+    }
+
+    /**
+     * Peuplement en SQL ensembliste : plusieurs millions de lignes en quelques secondes.
+     * Les soldes sont assez élevés pour qu'aucun transfert ne soit refusé.
+     */
+    private void seed(JdbcTemplate jdbc) {
+        jdbc.update("INSERT INTO users (username, password, email, role, balance, active) "
+                + "SELECT 'user' || X, 'password' || X, 'user' || X || '@bench.example.com', "
+                + "'USER', 1000000000.0, TRUE FROM SYSTEM_RANGE(1, ?)", users);
+        jdbc.update("INSERT INTO transactions (from_user_id, to_user_id, amount, description, timestamp, status) "
+                + "SELECT MOD(X, ?) + 1, MOD(X * 7919, ?) + 1, 10.0, 'bench', "
+                + "DATEADD('SECOND', -MOD(X, 31536000), CURRENT_TIMESTAMP), 'COMPLETED' "
+                + "FROM SYSTEM_RANGE(1, ?)", users, users, transactions);
+    }
+}
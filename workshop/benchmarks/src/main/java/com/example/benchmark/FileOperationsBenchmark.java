@@ -0,0 +1,120 @@
+package com.example.benchmark;
+
+import com.example.vulnerable.VulnerableBankApplication;
+import com.example.vulnerable.service.FileService;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opérations de FileService par processus externe (ls, convert, wget) contre
+ * leurs équivalents en Java (app.files.in-process.enabled).
+ *
+ * Le téléchargement vise un serveur HTTP local (64 Ko) pour ne mesurer que
+ * le coût du client. Le parcours exec de processImage nécessite ImageMagick :
+ * sans lui, convert échoue immédiatement et la mesure n'a pas de sens.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileOperationsBenchmark {
+
+    private static final Path UPLOAD_DIR = Paths.get("/tmp/uploads");
+
+    private static final byte[] PAYLOAD = new byte[64 * 1024];
+
+    @Param({"false", "true"})
+    public boolean inProcess;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpServer server;
+
+    private FileService fileService;
+
+    private String url;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        context = new SpringApplicationBuilder(VulnerableBankApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "--spring.sql.init.mode=never",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.h2.console.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.springframework=WARN",
+                        "--logging.level.com.example.vulnerable=WARN",
+                        "--app.files.in-process.enabled=" + inProcess);
+        fileService = context.getBean(FileService.class);
+
+        Files.createDirectories(UPLOAD_DIR);
+        Files.write(UPLOAD_DIR.resolve("bench.txt"), "bench".getBytes());
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, ThreadLocalRandom.current().nextInt());
+            }
+        }
+        ImageIO.write(image, "png", UPLOAD_DIR.resolve("bench.png").toFile());
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/payload", exchange -> {
+            exchange.sendResponseHeaders(200, PAYLOAD.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(PAYLOAD);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/payload";
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        server.stop(0);
+        context.close();
+    }
+
+    @Benchmark
+    public String fileInfo() {
+        return fileService.getFileInfo("bench.txt");
+    }
+
+    @Benchmark
+    public boolean processImage() {
+        return fileService.processImage("bench.png", "jpg");
+    }
+
+    @Benchmark
+    public boolean downloadFromUrl() {
+        return fileService.downloadFromUrl(url, "bench.bin");
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Test de charge en boucle fermée contre une application démarrée à part :
+ * N connexions simultanées, chacune enchaînant ses requêtes (une requête
+ * partie dès que la précédente a répondu), pendant une durée fixe.
+ *
+ * Sert à comparer le pool Tomcat classique au mode threads virtuels
+ * (app.threads.virtual.enabled, build -Pjava21) à 10 000 connexions. Le
+ * serveur doit accepter autant de connexions :
+ * --server.tomcat.max-connections=12000 --server.tomcat.accept-count=2000
+ *
+ * mvn exec:exec@load-test \
+ *     -Dload.args="http://localhost:8080 10000 60 /dashboard/api/balance/{id} /api/users/{id}"
+ *
+ * Arguments : URL de base, connexions, durée (s), puis les chemins, tirés au
+ * hasard à chaque requête ; {id} est remplacé par un identifiant de 1 à 5.
+ */
+public final class LoadTest {
+
+    // Histogramme par milliseconde jusqu'à 60 s ; au-delà, dernière case
+    private static final int MAX_MILLIS = 60_000;
+
+    private final AtomicLongArray histogram = new AtomicLongArray(MAX_MILLIS + 1);
+
+    private final AtomicLong ok = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final HttpClient client;
+
+    private final String baseUrl;
+
+    private final List<String> paths;
+
+    private volatile long deadline;
+
+    private LoadTest(HttpClient client, String baseUrl, List<String> paths) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.paths = paths;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 4) {
+            System.err.println("Usage : LoadTest <url> <connexions> <durée s> <chemin>...");
+            System.exit(2);
+        }
+        int connections = Integer.parseInt(args[1]);
+        long seconds = Long.parseLong(args[2]);
+        List<String> paths = new ArrayList<>(List.of(args).subList(3, args.length));
+
+        ExecutorService callbacks = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(callbacks)
+                .build();
+
+        LoadTest test = new LoadTest(client, args[0], paths);
+        test.deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            test.next();
+        }
+        Thread.sleep(Duration.ofSeconds(seconds).toMillis());
+        // Laisser les dernières requêtes répondre (ou expirer)
+        Thread.sleep(Duration.ofSeconds(5).toMillis());
+        double elapsed = (System.nanoTime() - start) / 1e9 - 5;
+        test.report(connections, elapsed);
+        callbacks.shutdownNow();
+    }
+
+    private void next() {
+        if (System.nanoTime() >= deadline) {
+            return;
+        }
+        String path = paths.get(ThreadLocalRandom.current().nextInt(paths.size()))
+                .replace("{id}", String.valueOf(ThreadLocalRandom.current().nextInt(1, 6)));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(MAX_MILLIS / 1000))
+                .GET()
+                .build();
+        long sent = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, failure) -> {
+                    long millis = (System.nanoTime() - sent) / 1_000_000;
+                    histogram.incrementAndGet((int) Math.min(millis, MAX_MILLIS));
+                    if (failure == null && response.statusCode() < 500) {
+                        ok.incrementAndGet();
+                    } else {
+                        errors.incrementAndGet();
+                    }
+                    next();
+                });
+    }
+
+    private void report(int connections, double seconds) {
+        long total = ok.get() + errors.get();
+        System.out.printf(Locale.ROOT, "connexions=%d durée=%.1fs requêtes=%d erreurs=%d débit=%.0f req/s%n",
+                connections, seconds, total, errors.get(), total / seconds);
+        System.out.printf(Locale.ROOT, "latence ms : p50=%d p90=%d p99=%d p99.9=%d max=%d%n",
+                percentile(total, 0.50), percentile(total, 0.90), percentile(total, 0.99),
+                percentile(total, 0.999), percentile(total, 1.0));
+    }
+
+    private long percentile(long total, double rank) {
+        long target = (long) Math.ceil(rank * total);
+        long seen = 0;
+        for (int millis = 0; millis <= MAX_MILLIS; millis++) {
+            seen += histogram.get(millis);
+            if (seen >= target && seen > 0) {
+                return millis;
+            }
+        }
+        return MAX_MILLIS;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.benchmark;
+
+import com.example.vulnerable.service.TransferService;
+import com.example.vulnerable.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût de la journalisation sur les chemins qui loguent à chaque appel :
+ * connexion (UserService.login) et consultation de solde.
+ *
+ * logging=debug garde les niveaux de application.properties (DEBUG, show-sql),
+ * logging=prod active le profil Spring prod. Le backend dépend du build :
+ * Logback par défaut, Log4j2 asynchrone avec -Plog4j2 (ici et dans vulnerable-app,
+ * installé avec le même profil). Ajouter -prof gc pour le taux d'allocation :
+ *
+ * mvn -Plog4j2 package exec:exec -Djmh.args="LoggingBenchmark -p users=10000 -p transactions=100000 -prof gc"
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@Threads(8)
+public class LoggingBenchmark {
+
+    public static class LoggingState extends BankState {
+
+        @Param({"debug", "prod"})
+        public String logging;
+
+        UserService userService;
+
+        TransferService transferService;
+
+        @Setup(Level.Trial)
+        public void services() {
+            userService = bean(UserService.class);
+            transferService = bean(TransferService.class);
+        }
+
+        @Override
+        protected List<String> arguments() {
+            List<String> args = super.arguments();
+            // Niveaux de la configuration mesurée, pas ceux du silence par défaut des benchmarks
+            args.removeIf(arg -> arg.startsWith("--logging.level.") || arg.startsWith("--spring.jpa.show-sql="));
+            if ("prod".equals(logging)) {
+                args.add("--spring.profiles.active=prod");
+            }
+            return args;
+        }
+    }
+
+    @Benchmark
+    public Object login(LoggingState state) {
+        int user = randomUser(state);
+        return state.userService.login("user" + user, "password" + user);
+    }
+
+    @Benchmark
+    public Double balance(LoggingState state) {
+        return state.transferService.getBalance((long) randomUser(state));
+    }
+
+    private static int randomUser(LoggingState state) {
+        return ThreadLocalRandom.current().nextInt(1, state.users + 1);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rafale de connexions (12 threads) à côté d'un travail CPU court
+ * (4 threads, SHA-256 de 4 Ko) qui tient lieu des transferts, au coût BCrypt
+ * 10 et 12.
+ *
+ * mode=caller vérifie sur le thread de requête (BCryptPasswordEncoder seul),
+ * mode=pool reproduit AdaptivePasswordEncoder de solutions : pool de la
+ * moitié des cœurs, file bornée ; un refus (503) compte pour une opération
+ * de « login », suivie d'une attente du client. Les connexions vérifiées et
+ * refusées par seconde sont affichées à chaque itération. Le débit de
+ * « work » montre ce que la rafale laisse aux transferts.
+ *
+ * cachedLogin mesure une connexion servie par le cache (HMAC + recherche).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class LoginThroughputBenchmark {
+
+    private static final String PASSWORD = "password123";
+
+    private static final long SHED_BACKOFF_MILLIS = 50;
+
+    @State(Scope.Group)
+    public static class StormState {
+
+        @Param({"10", "12"})
+        public int strength;
+
+        @Param({"caller", "pool"})
+        public String mode;
+
+        BCryptPasswordEncoder encoder;
+
+        String hash;
+
+        ExecutorService pool;
+
+        final byte[] payload = new byte[4096];
+
+        final AtomicLong verified = new AtomicLong();
+
+        final AtomicLong shed = new AtomicLong();
+
+        long iterationStart;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            encoder = new BCryptPasswordEncoder(strength);
+            hash = encoder.encode(PASSWORD);
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(4 * threads), new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        @Setup(Level.Iteration)
+        public void startIteration() {
+            verified.set(0);
+            shed.set(0);
+            iterationStart = System.nanoTime();
+        }
+
+        @TearDown(Level.Iteration)
+        public void report() {
+            double seconds = (System.nanoTime() - iterationStart) / 1e9;
+            System.out.printf(" (connexions vérifiées %.1f/s, refusées %.1f/s)",
+                    verified.get() / seconds, shed.get() / seconds);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.shutdownNow();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CacheState {
+
+        SecretKeySpec secret;
+
+        String hash;
+
+        final Set<ByteBuffer> verified = ConcurrentHashMap.newKeySet();
+
+        @Setup(Level.Trial)
+        public void setUp() throws GeneralSecurityException {
+            secret = new SecretKeySpec(new byte[32], "HmacSHA256");
+            hash = new BCryptPasswordEncoder(12).encode(PASSWORD);
+            verified.add(key(this));
+        }
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(12)
+    public boolean login(StormState state) throws InterruptedException {
+        if ("caller".equals(state.mode)) {
+            boolean matches = state.encoder.matches(PASSWORD, state.hash);
+            state.verified.incrementAndGet();
+            return matches;
+        }
+        try {
+            Future<Boolean> verified = state.pool.submit(() -> state.encoder.matches(PASSWORD, state.hash));
+            boolean matches = verified.get();
+            state.verified.incrementAndGet();
+            return matches;
+        } catch (RejectedExecutionException e) {
+            // Le client refusé (503) réessaie plus tard au lieu de boucler
+            state.shed.incrementAndGet();
+            Thread.sleep(SHED_BACKOFF_MILLIS);
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(4)
+    public void work(StormState state, Blackhole bh) throws NoSuchAlgorithmException {
+        bh.consume(MessageDigest.getInstance("SHA-256").digest(state.payload));
+    }
+
+    @Benchmark
+    public boolean cachedLogin(CacheState state) throws GeneralSecurityException {
+        return state.verified.contains(key(state));
+    }
+
+    private static ByteBuffer key(CacheState state) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(state.secret);
+        mac.update(state.hash.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        mac.update(PASSWORD.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(mac.doFinal());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.benchmark;
+
+import com.example.vulnerable.model.Transaction;
+import com.example.vulnerable.model.User;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Reproduction des accès base de SecureTransferService.transfer et de
+ * SecureUserRepository.searchUsers sur le schéma de VulnerableBank.
+ *
+ * Le module solutions ne contient que les classes corrigées (il ne compile
+ * pas seul) : on mesure donc ici les mêmes requêtes JPQL et la même
+ * isolation SERIALIZABLE, sans les contrôles Spring Security.
+ */
+public class SecurePaths {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final TransactionTemplate serializable;
+
+    public SecurePaths(EntityManagerFactory entityManagerFactory,
+                       PlatformTransactionManager transactionManager) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.serializable = new TransactionTemplate(transactionManager);
+        this.serializable.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+    }
+
+    /**
+     * Lecture des deux comptes, total du jour, écriture des soldes et de la transaction.
+     */
+    public Transaction transfer(Long fromUserId, Long toUserId, double amount) {
+        return serializable.execute(status -> {
+            EntityManager em = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+            User fromUser = em.find(User.class, fromUserId);
+            User toUser = em.find(User.class, toUserId);
+
+            Double dailyTotal = em.createQuery("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t "
+                            + "WHERE t.fromUserId = :userId AND t.timestamp >= :startOfDay", Double.class)
+                    .setParameter("userId", fromUserId)
+                    .setParameter("startOfDay", LocalDate.now().atStartOfDay())
+                    .getSingleResult();
+            if (dailyTotal + amount > 50000.00) {
+                throw new IllegalStateException("Limite de transfert quotidienne atteinte");
+            }
+
+            fromUser.setBalance(fromUser.getBalance() - amount);
+            toUser.setBalance(toUser.getBalance() + amount);
+
+            Transaction transaction = new Transaction();
+            transaction.setFromUserId(fromUserId);
+            transaction.setToUserId(toUserId);
+            transaction.setAmount(amount);
+            transaction.setDescription("bench");
+            transaction.setStatus("COMPLETED");
+            em.persist(transaction);
+            return transaction;
+        });
+    }
+
+    /**
+     * Même JPQL que SecureUserRepository.searchUsers.
+     */
+    public List<User> searchUsers(String searchTerm) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            String sanitizedTerm = searchTerm
+                    .replace("\\", "\\\\")
+                    .replace("%", "\\%")
+                    .replace("_", "\\_");
+            return em.createQuery("SELECT u FROM User u WHERE "
+                            + "LOWER(u.username) LIKE LOWER(:term) OR "
+                            + "LOWER(u.email) LIKE LOWER(:term)", User.class)
+                    .setParameter("term", "%" + sanitizedTerm + "%")
+                    .setMaxResults(50)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+}
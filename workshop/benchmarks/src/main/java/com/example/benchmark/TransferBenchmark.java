@@ -0,0 +1,95 @@
+package com.example.benchmark;
+
+import com.example.vulnerable.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transferts concurrents entre un millier de comptes « chauds ».
+ *
+ * Un transfert refusé (solde, verrou mort H2) est compté comme une opération :
+ * le débit mesuré est celui des tentatives.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@Threads(8)
+public class TransferBenchmark {
+
+    private static final int HOT_ACCOUNTS = 1000;
+
+    public static class TransferState extends BankState {
+
+        @Param({"false", "true"})
+        public boolean ledger;
+
+        TransferService transferService;
+
+        @Setup(Level.Trial)
+        public void services() {
+            transferService = bean(TransferService.class);
+        }
+
+        @Override
+        protected List<String> arguments() {
+            List<String> args = super.arguments();
+            args.add("--app.ledger.enabled=" + ledger);
+            return args;
+        }
+    }
+
+    public static class SecureTransferState extends BankState {
+
+        SecurePaths securePaths;
+
+        @Setup(Level.Trial)
+        public void services() {
+            securePaths = new SecurePaths(bean(EntityManagerFactory.class),
+                    bean(PlatformTransactionManager.class));
+        }
+    }
+
+    @Benchmark
+    public void transfer(TransferState state, Blackhole bh) {
+        long from = randomAccount();
+        long to = randomAccount();
+        try {
+            bh.consume(state.transferService.transfer(from, to, 1.0, "bench", from));
+        } catch (RuntimeException e) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void secureTransfer(SecureTransferState state, Blackhole bh) {
+        long from = randomAccount();
+        long to = randomAccount();
+        try {
+            bh.consume(state.securePaths.transfer(from, to, 1.0));
+        } catch (RuntimeException e) {
+            bh.consume(e);
+        }
+    }
+
+    private static long randomAccount() {
+        return 1 + ThreadLocalRandom.current().nextInt(HOT_ACCOUNTS);
+    }
+}
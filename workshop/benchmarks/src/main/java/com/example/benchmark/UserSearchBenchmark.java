@@ -0,0 +1,88 @@
+package com.example.benchmark;
+
+import com.example.vulnerable.repository.UserRepository;
+import com.example.vulnerable.repository.UserSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche LIKE '%terme%' : UserRepository.searchUsersUnsafe contre la
+ * requête paramétrée de SecureUserRepository.searchUsers, et l'index de
+ * trigrammes qui les remplace.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class UserSearchBenchmark {
+
+    public static class SearchState extends BankState {
+
+        @Param("user4242")
+        public String term;
+
+        UserRepository userRepository;
+
+        SecurePaths securePaths;
+
+        @Setup(Level.Trial)
+        public void services() {
+            userRepository = bean(UserRepository.class);
+            securePaths = new SecurePaths(bean(EntityManagerFactory.class),
+                    bean(PlatformTransactionManager.class));
+        }
+    }
+
+    public static class IndexedSearchState extends SearchState {
+
+        UserSearchIndex searchIndex;
+
+        @Setup(Level.Trial)
+        public void index() {
+            // Construit au démarrage sur une base vide : reconstruction après peuplement
+            searchIndex = bean(UserSearchIndex.class);
+            searchIndex.build();
+        }
+
+        @Override
+        protected List<String> arguments() {
+            List<String> args = super.arguments();
+            args.add("--app.search.index.enabled=true");
+            return args;
+        }
+    }
+
+    @Benchmark
+    public List<?> searchUsersUnsafe(SearchState state) {
+        return state.userRepository.searchUsersUnsafe(state.term);
+    }
+
+    @Benchmark
+    public List<?> secureSearchUsers(SearchState state) {
+        return state.securePaths.searchUsers(state.term);
+    }
+
+    @Benchmark
+    public List<Long> indexSearch(IndexedSearchState state) {
+        return state.searchIndex.search(state.term, 50);
+    }
+
+    @Benchmark
+    public List<?> searchUsersIndexed(IndexedSearchState state) {
+        return state.userRepository.searchUsersIndexed(state.term, 50);
+    }
+}
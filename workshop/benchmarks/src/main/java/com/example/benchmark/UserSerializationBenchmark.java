@@ -0,0 +1,69 @@
+package com.example.benchmark;
+
+import com.example.vulnerable.model.User;
+import com.example.vulnerable.service.BinaryCodec;
+import com.example.vulnerable.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export / import d'un utilisateur : Java serialization + Base64 (parcours
+ * par défaut de UserService) contre BinaryCodec + Base64
+ * (app.export.binary.enabled). Pas de base : pas de contexte Spring.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserSerializationBenchmark {
+
+    private final UserService userService = new UserService();
+
+    private User user;
+
+    private String serialized;
+
+    private String encoded;
+
+    @Setup
+    public void setUp() {
+        user = new User(42L, "john", "password123", "john@example.com", "USER",
+                "987-65-4321", "4222-2222-2222-2222", 5000.0, true);
+        serialized = userService.serializeUser(user);
+        encoded = Base64.getEncoder().encodeToString(BinaryCodec.encodeUser(user));
+    }
+
+    @Benchmark
+    public String serializeUser() {
+        return userService.serializeUser(user);
+    }
+
+    @Benchmark
+    public User deserializeUser() {
+        return userService.deserializeUser(serialized);
+    }
+
+    @Benchmark
+    public String encodeUserBinary() {
+        return Base64.getEncoder().encodeToString(BinaryCodec.encodeUser(user));
+    }
+
+    @Benchmark
+    public User decodeUserBinary() throws IOException {
+        return BinaryCodec.decodeUser(Base64.getDecoder().decode(encoded));
+    }
+}
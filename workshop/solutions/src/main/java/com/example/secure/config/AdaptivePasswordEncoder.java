@@ -0,0 +1,250 @@
+package com.example.secure.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Encodeur BCrypt tenant les pics de connexions.
+ *
+ * CORRECTIONS APPLIQUÉES :
+ * - Hachages (connexion, inscription) exécutés par un pool borné : une
+ *   rafale de connexions n'occupe jamais plus de {@code threads} cœurs, les
+ *   transferts gardent les autres
+ * - Admission : une demande dont l'attente prévue (file × durée moyenne d'un
+ *   hachage / threads) dépasse maxWait est refusée d'emblée (503)
+ * - Cache des vérifications réussies, désactivé par défaut (cacheMaxEntries
+ *   à 0), clé HMAC-SHA256(hash stocké, mot de passe) : ni mot de passe ni
+ *   empreinte rapide conservés, et un changement de mot de passe change la
+ *   clé. La clé HMAC est tirée à nouveau à chaque période ttl, ce qui vide
+ *   le cache : une entrée vit au plus ttl
+ * - Re-hachage à la connexion : upgradeEncoding signale tout hash d'un autre
+ *   coût que {@code strength}, refait par DaoAuthenticationProvider
+ *   (UserDetailsPasswordService). Le coût s'ajuste ainsi au matériel
+ *
+ * Compromis du cache : l'OWASP (Password Storage Cheat Sheet) veut qu'un
+ * mot de passe ne se vérifie qu'au prix d'un hachage lent. La clé HMAC et
+ * les entrées du cache sont en mémoire : une copie du heap (heap dump,
+ * fichier d'échange, core dump) pendant leur période ttl permet d'attaquer
+ * les mots de passe des utilisateurs connectés récemment à la vitesse de
+ * HMAC-SHA256, des milliards d'essais par seconde sur GPU, au lieu de
+ * quelques-uns par seconde avec BCrypt. À n'activer que si les connexions
+ * répétées (clients sans session) coûtent trop, avec un ttl court.
+ */
+public class AdaptivePasswordEncoder implements PasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePasswordEncoder.class);
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d\\d)\\$");
+
+    private static final String HMAC = "HmacSHA256";
+
+    // Garde-fou de mémoire ; en pratique l'admission refuse bien avant
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private final BCryptPasswordEncoder delegate;
+
+    private final int strength;
+
+    private final int threads;
+
+    private final long maxWaitNanos;
+
+    private final long ttlNanos;
+
+    private final int maxEntries;
+
+    private final ThreadPoolExecutor executor;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private volatile Generation generation;
+
+    // Moyenne glissante d'un hachage ; mises à jour concurrentes sans verrou, une perte est sans effet
+    private volatile long averageNanos;
+
+    public AdaptivePasswordEncoder(int strength, int threads, long maxWaitMillis,
+                                   long cacheTtlSeconds, int cacheMaxEntries) {
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+        this.threads = threads;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(cacheTtlSeconds);
+        this.maxEntries = cacheMaxEntries;
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+                task -> {
+                    Thread thread = new Thread(task, "password-hash-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.generation = maxEntries > 0 ? new Generation() : null;
+
+        // Étalonnage : durée d'un hachage au coût configuré sur ce matériel
+        long start = System.nanoTime();
+        delegate.encode("calibration");
+        this.averageNanos = System.nanoTime() - start;
+        logger.info("BCrypt coût {} : {} ms par hachage, {} threads de vérification",
+                strength, averageNanos / 1_000_000, threads);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        if (maxEntries == 0) {
+            return submit(() -> delegate.matches(rawPassword, encodedPassword));
+        }
+        Generation current = generation();
+        ByteBuffer key = current.key(rawPassword, encodedPassword);
+        if (current.verified.contains(key)) {
+            return true;
+        }
+        boolean matches = submit(() -> delegate.matches(rawPassword, encodedPassword));
+        // Seules les réussites sont gardées : un essai erroné coûte toujours un hachage
+        if (matches && current.verified.size() < maxEntries) {
+            current.verified.add(key);
+        }
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    /**
+     * Appelée à la fermeture du contexte (méthode de destruction déduite par Spring).
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T submit(Callable<T> hash) {
+        long average = averageNanos;
+        long expectedWait = (executor.getQueue().size() + 1) * average / threads;
+        if (expectedWait > maxWaitNanos) {
+            throw new OverloadedException(expectedWait);
+        }
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                T result = hash.call();
+                averageNanos += (System.nanoTime() - start - averageNanos) / 8;
+                return result;
+            });
+        } catch (RejectedExecutionException e) {
+            throw new OverloadedException(expectedWait);
+        }
+        try {
+            return future.get(maxWaitNanos + 2 * average, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new OverloadedException(maxWaitNanos);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Vérification du mot de passe interrompue", e);
+        } catch (ExecutionException e) {
+            throw new AuthenticationServiceException("Erreur de vérification du mot de passe", e.getCause());
+        }
+    }
+
+    private Generation generation() {
+        Generation current = generation;
+        if (System.nanoTime() - current.createdAt < ttlNanos) {
+            return current;
+        }
+        synchronized (this) {
+            if (generation == current) {
+                generation = new Generation();
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * Clé HMAC et vérifications réussies d'une période ttl.
+     */
+    private final class Generation {
+
+        private final long createdAt = System.nanoTime();
+
+        private final SecretKeySpec secret;
+
+        private final Set<ByteBuffer> verified = ConcurrentHashMap.newKeySet();
+
+        Generation() {
+            byte[] bytes = new byte[32];
+            random.nextBytes(bytes);
+            this.secret = new SecretKeySpec(bytes, HMAC);
+        }
+
+        ByteBuffer key(CharSequence rawPassword, String encodedPassword) {
+            try {
+                Mac mac = Mac.getInstance(HMAC);
+                mac.init(secret);
+                mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+                mac.update((byte) 0);
+                mac.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(rawPassword)));
+                return ByteBuffer.wrap(mac.doFinal());
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 indisponible", e);
+            }
+        }
+    }
+
+    /**
+     * Vérification refusée faute de capacité : la connexion peut être retentée.
+     */
+    public static class OverloadedException extends AuthenticationServiceException {
+
+        private final long retryAfterSeconds;
+
+        OverloadedException(long expectedWaitNanos) {
+            super("Service d'authentification saturé, réessayez plus tard");
+            this.retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(expectedWaitNanos));
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
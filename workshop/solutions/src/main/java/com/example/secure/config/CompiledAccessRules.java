@@ -0,0 +1,213 @@
+package com.example.secure.config;
+
+import com.example.secure.model.Role;
+import com.example.secure.service.CustomUserDetails;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Règles d'accès aux URL compilées en arbre de segments.
+ *
+ * Remplace la liste d'antMatchers évalués un par un (puis une expression
+ * SpEL) : le chemin est découpé une fois et descend l'arbre ; la première
+ * règle déclarée qui correspond l'emporte, comme avec authorizeRequests().
+ * La règle retenue est mise en cache par chemin (cache borné, vidé quand il
+ * est plein) ; le contrôle de rôle est un test de bit sur CustomUserDetails.
+ *
+ * Motifs pris en charge : segments littéraux, {@code *} (un segment entier)
+ * et {@code /**} final (zéro ou plusieurs segments).
+ */
+public class CompiledAccessRules implements AuthorizationManager<RequestAuthorizationContext> {
+
+    private static final long PERMIT_ALL = -1;
+
+    private static final long AUTHENTICATED = 0;
+
+    private static final int NO_RULE = Integer.MAX_VALUE;
+
+    private static final int CACHE_SIZE = 4096;
+
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private final AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+
+    private final Node root = new Node();
+
+    // Par règle : PERMIT_ALL, AUTHENTICATED ou masque des rôles admis
+    private final List<Long> requirements = new ArrayList<>();
+
+    private volatile long[] compiled = new long[0];
+
+    private final Map<String, Integer> decisions = new ConcurrentHashMap<>();
+
+    public CompiledAccessRules permitAll(String... patterns) {
+        return add(PERMIT_ALL, patterns);
+    }
+
+    public CompiledAccessRules authenticated(String... patterns) {
+        return add(AUTHENTICATED, patterns);
+    }
+
+    public CompiledAccessRules hasRole(Role role, String... patterns) {
+        return add(role.bit(), patterns);
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        long requirement = requirement(context.getRequest());
+        if (requirement == PERMIT_ALL) {
+            return GRANTED;
+        }
+        Authentication current = authentication.get();
+        if (current == null || !current.isAuthenticated() || trustResolver.isAnonymous(current)) {
+            return DENIED;
+        }
+        if (requirement == AUTHENTICATED) {
+            return GRANTED;
+        }
+        return (roles(current) & requirement) != 0 ? GRANTED : DENIED;
+    }
+
+    /**
+     * Exigence du chemin de la requête (servletPath + pathInfo, comme AntPathRequestMatcher).
+     */
+    private long requirement(HttpServletRequest request) {
+        String path = request.getPathInfo() == null
+                ? request.getServletPath()
+                : request.getServletPath() + request.getPathInfo();
+        Integer rule = decisions.get(path);
+        if (rule == null) {
+            rule = root.match(segments(path), 0);
+            if (decisions.size() >= CACHE_SIZE) {
+                // Chemins avec identifiants : on repart de zéro plutôt que de grossir sans fin
+                decisions.clear();
+            }
+            decisions.put(path, rule);
+        }
+        // Aucune règle : authentification exigée, comme anyRequest().authenticated()
+        return rule == NO_RULE ? AUTHENTICATED : compiled[rule];
+    }
+
+    private static long roles(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof CustomUserDetails) {
+            return ((CustomUserDetails) principal).getRoles();
+        }
+        // Authentification d'une autre origine : masque recalculé depuis les autorités
+        long roles = 0;
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            roles |= Role.bitOf(authority.getAuthority());
+        }
+        return roles;
+    }
+
+    private synchronized CompiledAccessRules add(long requirement, String... patterns) {
+        int rule = requirements.size();
+        requirements.add(requirement);
+        for (String pattern : patterns) {
+            root.insert(pattern, segments(pattern), 0, rule);
+        }
+        compiled = requirements.stream().mapToLong(Long::longValue).toArray();
+        decisions.clear();
+        return this;
+    }
+
+    /**
+     * Segments non vides ; un "/" final devient un segment vide ("/login/"
+     * ne correspond pas à "/login", comme avec AntPathMatcher).
+     */
+    private static String[] segments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int slash = path.indexOf('/', start);
+            int end = slash < 0 ? length : slash;
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        if (length > 1 && path.charAt(length - 1) == '/') {
+            segments.add("");
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    /**
+     * Nœud de l'arbre : règles terminées ici, règles /** couvrant ce
+     * sous-arbre, fils littéraux et fils {@code *}.
+     */
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+
+        private Node wildcard;
+
+        private int exactRule = NO_RULE;
+
+        private int subtreeRule = NO_RULE;
+
+        void insert(String pattern, String[] segments, int index, int rule) {
+            if (index == segments.length) {
+                exactRule = Math.min(exactRule, rule);
+                return;
+            }
+            String segment = segments[index];
+            if ("**".equals(segment)) {
+                if (index != segments.length - 1) {
+                    throw new IllegalArgumentException("** n'est pris en charge qu'en fin de motif : " + pattern);
+                }
+                subtreeRule = Math.min(subtreeRule, rule);
+                return;
+            }
+            if (segment.indexOf('*') >= 0 && !"*".equals(segment) || segment.indexOf('?') >= 0
+                    || segment.indexOf('{') >= 0) {
+                throw new IllegalArgumentException("Motif non pris en charge : " + pattern);
+            }
+            Node child;
+            if ("*".equals(segment)) {
+                if (wildcard == null) {
+                    wildcard = new Node();
+                }
+                child = wildcard;
+            } else {
+                child = children.computeIfAbsent(segment, s -> new Node());
+            }
+            child.insert(pattern, segments, index + 1, rule);
+        }
+
+        /**
+         * Plus petit numéro de règle correspondant au chemin, ou NO_RULE.
+         */
+        int match(String[] segments, int index) {
+            int best = subtreeRule;
+            if (index == segments.length) {
+                return Math.min(best, exactRule);
+            }
+            Node child = children.get(segments[index]);
+            if (child != null) {
+                best = Math.min(best, child.match(segments, index + 1));
+            }
+            if (wildcard != null && !segments[index].isEmpty()) {
+                best = Math.min(best, wildcard.match(segments, index + 1));
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.secure.config;
+
+import com.example.secure.service.LoginAttemptTracker;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Refuse les POST /login d'une adresse bloquée par LoginAttemptTracker
+ * (429 + Retry-After), avant toute lecture en base ou vérification BCrypt.
+ *
+ * Enregistré seulement dans la chaîne Spring Security (pas un bean, sinon
+ * Spring Boot l'ajouterait aussi aux filtres du conteneur).
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final LoginAttemptTracker loginAttempts;
+
+    public LoginThrottleFilter(LoginAttemptTracker loginAttempts) {
+        this.loginAttempts = loginAttempts;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !"/login".equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        long blockedUntil = loginAttempts.blockedUntil(request.getRemoteAddr());
+        if (blockedUntil > 0) {
+            long retryAfter = Math.max(1, (blockedUntil - System.currentTimeMillis() + 999) / 1000);
+            response.setHeader("Retry-After", String.valueOf(retryAfter));
+            response.sendError(TOO_MANY_REQUESTS, "Trop de tentatives de connexion");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
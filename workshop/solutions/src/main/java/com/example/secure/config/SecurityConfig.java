@@ -1,13 +1,19 @@
 package com.example.secure.config;
 
+import com.example.secure.model.Role;
+import com.example.secure.service.LoginAttemptTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.header.writers.ReferrerPolicyHeaderWriter;
 import org.springframework.security.web.header.writers.XXssProtectionHeaderWriter;
@@ -15,6 +21,7 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.Arrays;
 import java.util.List;
 
@@ -27,12 +34,40 @@ import java.util.List;
  * - Headers de sécurité configurés
  * - CORS restrictif
  * - Session management sécurisé
+ * - Vérifications BCrypt hors des threads de requête (AdaptivePasswordEncoder)
+ * - Échecs de connexion comptés en mémoire, adresses abusives refusées
+ *   avant BCrypt (LoginAttemptTracker, LoginThrottleFilter)
+ * - Règles d'URL compilées en arbre, rôles en masque de bits sur le
+ *   principal (CompiledAccessRules, CustomUserDetails)
  */
 @Configuration
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(prePostEnabled = true, securedEnabled = true)
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
+    @Value("${app.security.bcrypt.strength:12}")
+    private int bcryptStrength;
+
+    // 0 : la moitié des cœurs, pour laisser le reste aux transferts
+    @Value("${app.security.bcrypt.threads:0}")
+    private int bcryptThreads;
+
+    @Value("${app.security.bcrypt.max-wait-ms:2000}")
+    private long bcryptMaxWaitMillis;
+
+    // Désactivé par défaut : voir le compromis décrit dans AdaptivePasswordEncoder
+    @Value("${app.security.credential-cache.enabled:false}")
+    private boolean credentialCacheEnabled;
+
+    @Value("${app.security.credential-cache.ttl-seconds:120}")
+    private long credentialCacheTtlSeconds;
+
+    @Value("${app.security.credential-cache.max-entries:10000}")
+    private int credentialCacheMaxEntries;
+
+    @Autowired
+    private LoginAttemptTracker loginAttempts;
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http
@@ -44,6 +79,11 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .ignoringAntMatchers("/api/public/**") // API publique sans CSRF
             .and()
 
+            // ========================================
+            // LIMITATION DES TENTATIVES DE CONNEXION PAR IP
+            // ========================================
+            .addFilterBefore(new LoginThrottleFilter(loginAttempts), UsernamePasswordAuthenticationFilter.class)
+
             // ========================================
             // CORS RESTRICTIF
             // ========================================
@@ -99,18 +139,9 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
             // ========================================
             // AUTORISATION DES REQUÊTES
             // ========================================
-            .authorizeRequests()
-                // Pages publiques
-                .antMatchers("/", "/login", "/register", "/css/**", "/js/**", "/images/**").permitAll()
-                .antMatchers("/api/public/**").permitAll()
-                .antMatchers("/api/health").permitAll()
-                
-                // Pages admin
-                .antMatchers("/admin/**").hasRole("ADMIN")
-                .antMatchers("/api/admin/**").hasRole("ADMIN")
-                
-                // Toutes les autres requêtes nécessitent une authentification
-                .anyRequest().authenticated()
+            // Règles compilées en arbre (accessRules) : un seul parcours du chemin par requête
+            .authorizeHttpRequests()
+                .anyRequest().access(accessRules())
             .and()
 
             // ========================================
@@ -120,7 +151,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .loginPage("/login")
                 .loginProcessingUrl("/login")
                 .defaultSuccessUrl("/dashboard", true)
-                .failureUrl("/login?error=true")
+                .failureHandler(loginFailureHandler())
                 .usernameParameter("username")
                 .passwordParameter("password")
                 .permitAll()
@@ -167,6 +198,21 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .accessDeniedPage("/error/403");
     }
 
+    /**
+     * Règles d'accès aux URL, dans l'ordre de priorité.
+     * Toutes les autres requêtes nécessitent une authentification.
+     */
+    private CompiledAccessRules accessRules() {
+        return new CompiledAccessRules()
+                // Pages publiques
+                .permitAll("/", "/login", "/register", "/css/**", "/js/**", "/images/**")
+                .permitAll("/api/public/**")
+                .permitAll("/api/health")
+                // Pages admin
+                .hasRole(Role.ADMIN, "/admin/**")
+                .hasRole(Role.ADMIN, "/api/admin/**");
+    }
+
     /**
      * Encodeur de mot de passe BCrypt.
      * 
@@ -174,12 +220,38 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
      * - Génère automatiquement un salt unique
      * - Le coût (strength) ralentit les attaques brute-force
      * - Résistant aux rainbow tables
+     *
+     * Les hachages passent par le pool borné d'AdaptivePasswordEncoder ; les
+     * hash d'un autre coût sont refaits à la connexion suivante.
      */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        // Strength de 12 (2^12 = 4096 itérations)
+        // Strength de 12 par défaut (2^12 = 4096 itérations)
         // Plus le nombre est élevé, plus c'est sécurisé mais lent
-        return new BCryptPasswordEncoder(12);
+        int threads = bcryptThreads > 0
+                ? bcryptThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new AdaptivePasswordEncoder(bcryptStrength, threads, bcryptMaxWaitMillis,
+                credentialCacheTtlSeconds, credentialCacheEnabled ? credentialCacheMaxEntries : 0);
+    }
+
+    /**
+     * Échec de connexion : 503 + Retry-After quand la vérification a été
+     * refusée faute de capacité (ce n'est pas un mauvais mot de passe),
+     * page de login sinon.
+     */
+    private AuthenticationFailureHandler loginFailureHandler() {
+        SimpleUrlAuthenticationFailureHandler badCredentials =
+                new SimpleUrlAuthenticationFailureHandler("/login?error=true");
+        return (request, response, exception) -> {
+            if (exception instanceof AdaptivePasswordEncoder.OverloadedException) {
+                long retryAfter = ((AdaptivePasswordEncoder.OverloadedException) exception).getRetryAfterSeconds();
+                response.setHeader("Retry-After", String.valueOf(retryAfter));
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, exception.getMessage());
+                return;
+            }
+            badCredentials.onAuthenticationFailure(request, response, exception);
+        };
     }
 
     /**
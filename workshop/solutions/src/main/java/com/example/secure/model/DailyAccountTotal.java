@@ -0,0 +1,128 @@
+package com.example.secure.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Agrégat journalier par compte, maintenu à chaque transaction validée.
+ *
+ * Le contrôle de la limite quotidienne devient une lecture par clé primaire
+ * (userId, day) au lieu d'un scan des transactions du jour, et les relevés
+ * mensuels se calculent sur au plus 31 lignes.
+ */
+@Entity
+@Table(name = "daily_account_totals")
+public class DailyAccountTotal {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "total_in", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalIn = BigDecimal.ZERO;
+
+    @Column(name = "total_out", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalOut = BigDecimal.ZERO;
+
+    @Column(name = "count_in", nullable = false)
+    private long countIn = 0;
+
+    @Column(name = "count_out", nullable = false)
+    private long countOut = 0;
+
+    // ========================================
+    // CONSTRUCTEURS
+    // ========================================
+
+    protected DailyAccountTotal() {
+    }
+
+    public DailyAccountTotal(Long userId, LocalDate day) {
+        this.id = new Key(userId, day);
+    }
+
+    // ========================================
+    // MÉTHODES MÉTIER
+    // ========================================
+
+    public void addIncoming(BigDecimal amount) {
+        this.totalIn = this.totalIn.add(amount);
+        this.countIn++;
+    }
+
+    public void addOutgoing(BigDecimal amount) {
+        this.totalOut = this.totalOut.add(amount);
+        this.countOut++;
+    }
+
+    // ========================================
+    // GETTERS
+    // ========================================
+
+    public Key getId() {
+        return id;
+    }
+
+    public BigDecimal getTotalIn() {
+        return totalIn;
+    }
+
+    public BigDecimal getTotalOut() {
+        return totalOut;
+    }
+
+    public long getCountIn() {
+        return countIn;
+    }
+
+    public long getCountOut() {
+        return countOut;
+    }
+
+    /**
+     * Clé composite (compte, jour).
+     * Serializable est exigé par JPA pour les identifiants composites.
+     */
+    @Embeddable
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Column(name = "user_id", nullable = false)
+        private Long userId;
+
+        @Column(name = "business_day", nullable = false)
+        private LocalDate day;
+
+        protected Key() {
+        }
+
+        public Key(Long userId, LocalDate day) {
+            this.userId = userId;
+            this.day = day;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(userId, key.userId) && Objects.equals(day, key.day);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, day);
+        }
+    }
+}
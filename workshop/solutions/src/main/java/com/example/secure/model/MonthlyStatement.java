@@ -0,0 +1,49 @@
+package com.example.secure.model;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+/**
+ * Relevé mensuel d'un compte, calculé à partir des agrégats journaliers.
+ */
+public class MonthlyStatement {
+
+    private final Long userId;
+
+    private final YearMonth month;
+
+    private final BigDecimal totalIn;
+
+    private final BigDecimal totalOut;
+
+    private final long transactionCount;
+
+    public MonthlyStatement(Long userId, YearMonth month, BigDecimal totalIn,
+                            BigDecimal totalOut, long transactionCount) {
+        this.userId = userId;
+        this.month = month;
+        this.totalIn = totalIn;
+        this.totalOut = totalOut;
+        this.transactionCount = transactionCount;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public BigDecimal getTotalIn() {
+        return totalIn;
+    }
+
+    public BigDecimal getTotalOut() {
+        return totalOut;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+}
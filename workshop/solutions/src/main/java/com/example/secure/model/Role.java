@@ -0,0 +1,45 @@
+package com.example.secure.model;
+
+/**
+ * Rôles de l'application, chacun un bit d'un masque : un contrôle de rôle
+ * est un ET binaire sur le masque porté par le principal (CustomUserDetails),
+ * sans parcours des autorités ni comparaison de chaînes.
+ */
+public enum Role {
+
+    USER,
+    ADMIN;
+
+    private static final String PREFIX = "ROLE_";
+
+    private final long bit = 1L << ordinal();
+
+    private final String authority = PREFIX + name();
+
+    public long bit() {
+        return bit;
+    }
+
+    /**
+     * Autorité Spring Security correspondante (ROLE_ADMIN...).
+     */
+    public String authority() {
+        return authority;
+    }
+
+    /**
+     * Bit du rôle nommé (ADMIN ou ROLE_ADMIN), 0 s'il est inconnu.
+     */
+    public static long bitOf(String name) {
+        if (name == null) {
+            return 0;
+        }
+        String role = name.startsWith(PREFIX) ? name.substring(PREFIX.length()) : name;
+        for (Role value : values()) {
+            if (value.name().equals(role)) {
+                return value.bit;
+            }
+        }
+        return 0;
+    }
+}
@@ -130,6 +130,8 @@ public class User {
     /**
      * Incrémente le compteur d'échecs de connexion.
      * Verrouille le compte après 5 tentatives.
+     * Le login ne l'appelle plus : LoginAttemptTracker compte en mémoire et
+     * n'écrit locked_until qu'au verrouillage.
      */
     public void incrementFailedLoginAttempts() {
         this.failedLoginAttempts++;
@@ -180,7 +182,8 @@ public class User {
         this.passwordHash = passwordHash;
     }
 
-    protected String getPasswordHash() {
+    // Lu par SecureUserDetailsService ; jamais sérialisé (@JsonIgnore sur le champ)
+    public String getPasswordHash() {
         return passwordHash;
     }
 
@@ -0,0 +1,100 @@
+package com.example.secure.repository;
+
+import com.example.secure.model.DailyAccountTotal;
+import com.example.secure.model.MonthlyStatement;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Repository des agrégats journaliers par compte.
+ *
+ * Toutes les méthodes doivent être appelées dans la transaction qui
+ * enregistre le transfert : l'agrégat et la transaction sont validés ensemble.
+ */
+@Repository
+public class DailyAccountTotalRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Insère la ligne du jour si elle manque, sans toucher à une ligne existante
+    private static final String INSERT_IF_ABSENT = "MERGE INTO daily_account_totals t "
+            + "USING (SELECT CAST(:userId AS BIGINT) AS user_id, CAST(:day AS DATE) AS business_day) s "
+            + "ON t.user_id = s.user_id AND t.business_day = s.business_day "
+            + "WHEN NOT MATCHED THEN INSERT (user_id, business_day, total_in, total_out, count_in, count_out) "
+            + "VALUES (s.user_id, s.business_day, 0, 0, 0, 0)";
+
+    /**
+     * Total sortant du compte pour le jour donné (lecture par clé primaire).
+     */
+    public BigDecimal getDailyOutgoingTotal(Long userId, LocalDate day) {
+        if (userId == null || day == null) {
+            throw new IllegalArgumentException("Paramètres invalides");
+        }
+
+        DailyAccountTotal total = entityManager.find(DailyAccountTotal.class,
+                new DailyAccountTotal.Key(userId, day));
+        return total == null ? BigDecimal.ZERO : total.getTotalOut();
+    }
+
+    /**
+     * Agrégat du jour verrouillé (SELECT ... FOR UPDATE) jusqu'à la fin de la
+     * transaction, créé s'il n'existe pas encore. Le contrôle de la limite
+     * quotidienne et la mise à jour se font sur cette même entité : deux
+     * transferts concurrents du même compte passent l'un après l'autre.
+     *
+     * La ligne absente est insérée dans la transaction appelante (MERGE ...
+     * WHEN NOT MATCHED), donc visible par le verrouillage qui suit quel que
+     * soit l'instantané de l'isolation SERIALIZABLE. Deux premiers transferts
+     * concurrents du jour sur le même compte : l'un échoue au conflit de clé
+     * et est annulé, comme tout conflit sérialisable.
+     */
+    public DailyAccountTotal lockOrCreate(Long userId, LocalDate day) {
+        if (userId == null || day == null) {
+            throw new IllegalArgumentException("Paramètres invalides");
+        }
+
+        DailyAccountTotal.Key key = new DailyAccountTotal.Key(userId, day);
+        DailyAccountTotal total = entityManager.find(DailyAccountTotal.class, key,
+                LockModeType.PESSIMISTIC_WRITE);
+        if (total == null) {
+            entityManager.createNativeQuery(INSERT_IF_ABSENT)
+                    .setParameter("userId", userId)
+                    .setParameter("day", day)
+                    .executeUpdate();
+            total = entityManager.find(DailyAccountTotal.class, key, LockModeType.PESSIMISTIC_WRITE);
+            if (total == null) {
+                throw new IllegalStateException("Agrégat journalier introuvable après création : " + userId);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Relevé mensuel : somme des agrégats du mois (au plus 31 lignes par compte).
+     */
+    public MonthlyStatement getMonthlyStatement(Long userId, YearMonth month) {
+        if (userId == null || month == null) {
+            throw new IllegalArgumentException("Paramètres invalides");
+        }
+
+        String jpql = "SELECT COALESCE(SUM(d.totalIn), 0), COALESCE(SUM(d.totalOut), 0), "
+                    + "COALESCE(SUM(d.countIn + d.countOut), 0) "
+                    + "FROM DailyAccountTotal d "
+                    + "WHERE d.id.userId = :userId AND d.id.day BETWEEN :start AND :end";
+        Object[] row = entityManager.createQuery(jpql, Object[].class)
+                .setParameter("userId", userId)
+                .setParameter("start", month.atDay(1))
+                .setParameter("end", month.atEndOfMonth())
+                .getSingleResult();
+
+        return new MonthlyStatement(userId, month,
+                (BigDecimal) row[0], (BigDecimal) row[1], ((Number) row[2]).longValue());
+    }
+}
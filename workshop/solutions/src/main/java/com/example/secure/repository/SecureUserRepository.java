@@ -1,13 +1,20 @@
 package com.example.secure.repository;
 
 import com.example.secure.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Repository SÉCURISÉ pour la gestion des utilisateurs.
@@ -16,6 +23,9 @@ import java.util.Optional;
  * - Utilisation de requêtes préparées (paramètres nommés)
  * - Utilisation de l'ORM JPA/JPQL au lieu de SQL natif
  * - Validation des entrées
+ *
+ * La recherche est servie par un index de trigrammes en mémoire
+ * (UserSearchIndex), maintenu par save() et delete().
  */
 @Repository
 public class SecureUserRepository {
@@ -23,6 +33,9 @@ public class SecureUserRepository {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private UserSearchIndex searchIndex;
+
     /**
      * SÉCURISÉ : Recherche par nom d'utilisateur avec paramètres liés
      */
@@ -60,31 +73,34 @@ public class SecureUserRepository {
     }
 
     /**
-     * SÉCURISÉ : Recherche avec LIKE et paramètres liés
+     * SÉCURISÉ : Recherche classée via l'index de trigrammes.
+     * Le terme n'est jamais interprété par la base : seuls des identifiants
+     * sont passés en paramètre.
      */
     public List<User> searchUsers(String searchTerm) {
-        // Validation et nettoyage de l'entrée
+        // Validation de l'entrée
         if (searchTerm == null || searchTerm.isBlank()) {
             return List.of();
         }
 
-        // Échapper les caractères spéciaux LIKE
-        String sanitizedTerm = searchTerm
-                .replace("\\", "\\\\")
-                .replace("%", "\\%")
-                .replace("_", "\\_");
-
-        String jpql = "SELECT u FROM User u WHERE " +
-                     "LOWER(u.username) LIKE LOWER(:term) OR " +
-                     "LOWER(u.email) LIKE LOWER(:term)";
-        
-        TypedQuery<User> query = entityManager.createQuery(jpql, User.class);
-        query.setParameter("term", "%" + sanitizedTerm + "%");
-        
         // Limiter le nombre de résultats
-        query.setMaxResults(50);
-        
-        return query.getResultList();
+        List<Long> ids = searchIndex.search(searchTerm.trim(), 50);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String jpql = "SELECT u FROM User u WHERE u.id IN :ids";
+        Map<Long, User> users = entityManager.createQuery(jpql, User.class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        // Conserver l'ordre du classement
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -111,6 +127,21 @@ public class SecureUserRepository {
         }
     }
 
+    /**
+     * Verrouillage posé par LoginAttemptTracker au franchissement du seuil,
+     * seule écriture liée aux échecs de connexion
+     */
+    @Transactional
+    public void lockUntil(String username, LocalDateTime lockedUntil, int failedAttempts) {
+        String jpql = "UPDATE User u SET u.lockedUntil = :lockedUntil, u.failedLoginAttempts = :attempts "
+                + "WHERE LOWER(u.username) = :username";
+        entityManager.createQuery(jpql)
+                .setParameter("lockedUntil", lockedUntil)
+                .setParameter("attempts", failedAttempts)
+                .setParameter("username", username)
+                .executeUpdate();
+    }
+
     /**
      * Recherche par ID
      */
@@ -129,12 +160,15 @@ public class SecureUserRepository {
             throw new IllegalArgumentException("L'utilisateur ne peut pas être null");
         }
         
+        User saved;
         if (user.getId() == null) {
             entityManager.persist(user);
-            return user;
+            saved = user;
         } else {
-            return entityManager.merge(user);
+            saved = entityManager.merge(user);
         }
+        searchIndex.index(saved.getId(), saved.getUsername(), saved.getEmail());
+        return saved;
     }
 
     /**
@@ -158,6 +192,7 @@ public class SecureUserRepository {
     public void delete(User user) {
         if (user != null) {
             entityManager.remove(entityManager.contains(user) ? user : entityManager.merge(user));
+            searchIndex.remove(user.getId());
         }
     }
 
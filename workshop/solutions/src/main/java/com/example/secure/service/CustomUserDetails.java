@@ -0,0 +1,126 @@
+package com.example.secure.service;
+
+import com.example.secure.model.Role;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Principal de l'application : id de l'utilisateur et masque de rôles,
+ * calculés une fois à la connexion.
+ *
+ * Les contrôles par requête (CompiledAccessRules, SecureTransferService)
+ * testent un bit du masque ; les autorités restent fournies pour le reste
+ * de Spring Security (@PreAuthorize, @Secured).
+ */
+public class CustomUserDetails implements UserDetails {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+
+    private final String username;
+
+    private final String password;
+
+    private final long roles;
+
+    private final boolean enabled;
+
+    private final boolean locked;
+
+    private final List<GrantedAuthority> authorities;
+
+    public CustomUserDetails(Long id, String username, String password, long roles,
+                             boolean enabled, boolean locked) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.roles = roles;
+        this.enabled = enabled;
+        this.locked = locked;
+        List<GrantedAuthority> granted = new ArrayList<>();
+        for (Role role : Role.values()) {
+            if ((roles & role.bit()) != 0) {
+                granted.add(new SimpleGrantedAuthority(role.authority()));
+            }
+        }
+        this.authorities = Collections.unmodifiableList(granted);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Masque des rôles (bits de Role).
+     */
+    public long getRoles() {
+        return roles;
+    }
+
+    public boolean hasRole(Role role) {
+        return (roles & role.bit()) != 0;
+    }
+
+    /**
+     * Vrai si l'un des rôles du masque est présent.
+     */
+    public boolean hasAnyRole(long mask) {
+        return (roles & mask) != 0;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return !locked;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Même utilisateur : la limite d'une session par utilisateur
+     * (SessionRegistry) compare les principaux.
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CustomUserDetails && username.equals(((CustomUserDetails) other).username);
+    }
+
+    @Override
+    public int hashCode() {
+        return username.hashCode();
+    }
+}
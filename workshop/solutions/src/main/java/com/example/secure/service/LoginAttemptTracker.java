@@ -0,0 +1,269 @@
+package com.example.secure.service;
+
+import com.example.secure.repository.SecureUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Suivi des échecs de connexion en mémoire, par username et par adresse IP.
+ *
+ * CORRECTIONS APPLIQUÉES :
+ * - Plus d'UPDATE de la ligne users à chaque tentative : les échecs sont
+ *   comptés dans une fenêtre glissante ({@code buckets} tranches sur
+ *   window-seconds), sans verrou (compteur et numéro de tranche dans un même
+ *   long, mis à jour par compareAndSet)
+ * - locked_until n'est écrit qu'au franchissement du seuil, par un seul
+ *   thread (celui qui pose le verrou en mémoire) ; la durée double à chaque
+ *   verrouillage (15 min, 30 min... 24 h au plus), comme
+ *   User.incrementFailedLoginAttempts
+ * - Une IP au-delà de son seuil est refusée avant BCrypt (LoginThrottleFilter),
+ *   sans écriture en base
+ * - Entrées réparties en {@code SHARDS} tables bornées : une fenêtre vide et
+ *   sans verrou en cours est évincée quand sa table déborde, ce qui borne la
+ *   mémoire face à des usernames inventés
+ */
+@Service
+public class LoginAttemptTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginAttemptTracker.class);
+
+    private static final int SHARDS = 64;
+
+    private static final int COUNT_BITS = 24;
+
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private static final long MAX_LOCK_MINUTES = 1440;
+
+    @Autowired
+    private SecureUserRepository userRepository;
+
+    @Value("${app.security.login-attempts.window-seconds:900}")
+    private long windowSeconds;
+
+    @Value("${app.security.login-attempts.buckets:15}")
+    private int buckets;
+
+    @Value("${app.security.login-attempts.username-threshold:5}")
+    private int usernameThreshold;
+
+    @Value("${app.security.login-attempts.ip-threshold:50}")
+    private int ipThreshold;
+
+    @Value("${app.security.login-attempts.lock-minutes:15}")
+    private long lockMinutes;
+
+    @Value("${app.security.login-attempts.max-entries:200000}")
+    private int maxEntries;
+
+    private long bucketMillis;
+
+    private int maxEntriesPerShard;
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentHashMap<String, Window>[] usernames = new ConcurrentHashMap[SHARDS];
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentHashMap<String, Window>[] addresses = new ConcurrentHashMap[SHARDS];
+
+    @PostConstruct
+    void init() {
+        if (buckets <= 0 || windowSeconds < buckets) {
+            throw new IllegalStateException("Fenêtre de tentatives de connexion invalide");
+        }
+        bucketMillis = windowSeconds * 1000 / buckets;
+        maxEntriesPerShard = Math.max(1, maxEntries / SHARDS);
+        for (int i = 0; i < SHARDS; i++) {
+            usernames[i] = new ConcurrentHashMap<>();
+            addresses[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    @EventListener
+    public void onFailure(AuthenticationFailureBadCredentialsEvent event) {
+        long now = System.currentTimeMillis();
+        String username = normalize(event.getAuthentication().getName());
+        if (username != null) {
+            Window window = window(usernames, username, now);
+            int failures = window.record(now);
+            long until = window.tryLock(failures, usernameThreshold, now);
+            if (until > 0) {
+                // Seule écriture en base : le verrouillage lui-même
+                LocalDateTime lockedUntil = LocalDateTime.ofInstant(Instant.ofEpochMilli(until), ZoneId.systemDefault());
+                userRepository.lockUntil(username, lockedUntil, failures);
+                logger.warn("Compte verrouillé jusqu'à {} après {} échecs de connexion", lockedUntil, failures);
+            }
+        }
+        String address = remoteAddress(event.getAuthentication());
+        if (address != null) {
+            Window window = window(addresses, address, now);
+            long until = window.tryLock(window.record(now), ipThreshold, now);
+            if (until > 0) {
+                logger.warn("Adresse {} bloquée jusqu'à {} (échecs de connexion)", address, Instant.ofEpochMilli(until));
+            }
+        }
+    }
+
+    /**
+     * Succès : le compteur du username repart de zéro, sans écriture en base.
+     */
+    @EventListener
+    public void onSuccess(AuthenticationSuccessEvent event) {
+        String username = normalize(event.getAuthentication().getName());
+        if (username != null) {
+            shard(usernames, username).remove(username);
+        }
+    }
+
+    /**
+     * Fin du blocage de l'adresse en millisecondes epoch, ou 0.
+     */
+    public long blockedUntil(String address) {
+        if (address == null) {
+            return 0;
+        }
+        Window window = shard(addresses, address).get(address);
+        if (window == null) {
+            return 0;
+        }
+        long until = window.lockedUntil.get();
+        return until > System.currentTimeMillis() ? until : 0;
+    }
+
+    private Window window(ConcurrentHashMap<String, Window>[] table, String key, long now) {
+        ConcurrentHashMap<String, Window> shard = shard(table, key);
+        Window window = shard.get(key);
+        if (window != null) {
+            return window;
+        }
+        if (shard.size() >= maxEntriesPerShard) {
+            evict(shard, now);
+        }
+        return shard.computeIfAbsent(key, k -> new Window());
+    }
+
+    private void evict(ConcurrentHashMap<String, Window> shard, long now) {
+        long epoch = now / bucketMillis;
+        shard.values().removeIf(window -> window.isIdle(epoch, now));
+        if (shard.size() >= maxEntriesPerShard) {
+            // Toutes les entrées sont actives : la plus ancienne part, pas le nouvel arrivant
+            shard.entrySet().stream()
+                    .min((a, b) -> Long.compare(a.getValue().lastEpoch(), b.getValue().lastEpoch()))
+                    .ifPresent(oldest -> shard.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    private static ConcurrentHashMap<String, Window> shard(ConcurrentHashMap<String, Window>[] table, String key) {
+        int h = key.hashCode();
+        return table[(h ^ (h >>> 16)) & (SHARDS - 1)];
+    }
+
+    private static String normalize(String username) {
+        if (username == null || username.isBlank() || username.length() > 100) {
+            return null;
+        }
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String remoteAddress(Authentication authentication) {
+        Object details = authentication.getDetails();
+        return details instanceof WebAuthenticationDetails
+                ? ((WebAuthenticationDetails) details).getRemoteAddress()
+                : null;
+    }
+
+    /**
+     * Fenêtre glissante d'une clé : chaque tranche porte son numéro (bits
+     * hauts) et son compteur (COUNT_BITS bits bas).
+     */
+    private final class Window {
+
+        private final AtomicLongArray slots = new AtomicLongArray(buckets);
+
+        private final AtomicLong lockedUntil = new AtomicLong();
+
+        private volatile int lockouts;
+
+        /**
+         * Ajoute un échec ; renvoie le total de la fenêtre.
+         */
+        int record(long now) {
+            long epoch = now / bucketMillis;
+            int index = (int) (epoch % buckets);
+            long current;
+            long next;
+            do {
+                current = slots.get(index);
+                next = (current >>> COUNT_BITS) == epoch
+                        ? current + ((current & COUNT_MASK) < COUNT_MASK ? 1 : 0)
+                        : (epoch << COUNT_BITS) | 1;
+            } while (!slots.compareAndSet(index, current, next));
+            return count(epoch);
+        }
+
+        /**
+         * Pose le verrou si le seuil est atteint et qu'aucun verrou n'est en
+         * cours ; renvoie sa fin au seul thread qui l'a posé, 0 sinon.
+         */
+        long tryLock(int failures, int threshold, long now) {
+            if (failures < threshold) {
+                return 0;
+            }
+            long current = lockedUntil.get();
+            if (current > now) {
+                return 0;
+            }
+            long minutes = Math.min(lockMinutes << Math.min(lockouts, 20), MAX_LOCK_MINUTES);
+            long until = now + minutes * 60_000;
+            if (!lockedUntil.compareAndSet(current, until)) {
+                return 0;
+            }
+            lockouts++;
+            // Les échecs déjà sanctionnés ne comptent plus pour le verrou suivant
+            for (int i = 0; i < buckets; i++) {
+                slots.set(i, 0);
+            }
+            return until;
+        }
+
+        int count(long epoch) {
+            int total = 0;
+            for (int i = 0; i < buckets; i++) {
+                long slot = slots.get(i);
+                if (epoch - (slot >>> COUNT_BITS) < buckets) {
+                    total += (int) (slot & COUNT_MASK);
+                }
+            }
+            return total;
+        }
+
+        long lastEpoch() {
+            long last = 0;
+            for (int i = 0; i < buckets; i++) {
+                last = Math.max(last, slots.get(i) >>> COUNT_BITS);
+            }
+            return last;
+        }
+
+        boolean isIdle(long epoch, long now) {
+            return lockedUntil.get() <= now && count(epoch) == 0;
+        }
+    }
+}
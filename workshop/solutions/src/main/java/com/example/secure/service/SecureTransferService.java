@@ -1,7 +1,11 @@
 package com.example.secure.service;
 
+import com.example.secure.model.DailyAccountTotal;
+import com.example.secure.model.MonthlyStatement;
+import com.example.secure.model.Role;
 import com.example.secure.model.Transaction;
 import com.example.secure.model.User;
+import com.example.secure.repository.DailyAccountTotalRepository;
 import com.example.secure.repository.SecureTransactionRepository;
 import com.example.secure.repository.SecureUserRepository;
 import org.slf4j.Logger;
@@ -15,6 +19,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 
 /**
@@ -26,6 +32,9 @@ import java.util.List;
  * - Protection contre les race conditions (isolation SERIALIZABLE)
  * - Logging sécurisé (pas de données sensibles)
  * - Limites de transfert
+ *
+ * La limite quotidienne est lue dans les agrégats journaliers
+ * (DailyAccountTotal), mis à jour dans la même transaction que le transfert.
  */
 @Service
 public class SecureTransferService {
@@ -43,6 +52,9 @@ public class SecureTransferService {
     @Autowired
     private SecureTransactionRepository transactionRepository;
 
+    @Autowired
+    private DailyAccountTotalRepository dailyTotalRepository;
+
     /**
      * Effectue un transfert SÉCURISÉ.
      * 
@@ -98,9 +110,18 @@ public class SecureTransferService {
             throw new IllegalStateException("Solde insuffisant");
         }
 
-        // 8. Vérifier la limite quotidienne
-        BigDecimal dailyTotal = transactionRepository.getDailyTransferTotal(fromUserId);
-        if (dailyTotal.add(amount).compareTo(DAILY_TRANSFER_LIMIT) > 0) {
+        // 8. Verrouiller les agrégats du jour des deux comptes jusqu'au commit,
+        // avant toute écriture et par userId croissant : A→B et B→A prennent
+        // les verrous dans le même ordre et ne s'interbloquent pas
+        LocalDate today = LocalDate.now();
+        boolean fromFirst = fromUserId < toUserId;
+        DailyAccountTotal firstTotal = dailyTotalRepository.lockOrCreate(fromFirst ? fromUserId : toUserId, today);
+        DailyAccountTotal secondTotal = dailyTotalRepository.lockOrCreate(fromFirst ? toUserId : fromUserId, today);
+        DailyAccountTotal fromDailyTotal = fromFirst ? firstTotal : secondTotal;
+        DailyAccountTotal toDailyTotal = fromFirst ? secondTotal : firstTotal;
+
+        // Limite quotidienne contrôlée sur l'agrégat verrouillé : un transfert concurrent attend
+        if (fromDailyTotal.getTotalOut().add(amount).compareTo(DAILY_TRANSFER_LIMIT) > 0) {
             throw new IllegalStateException("Limite de transfert quotidienne atteinte");
         }
 
@@ -124,7 +145,11 @@ public class SecureTransferService {
 
         Transaction savedTransaction = transactionRepository.save(transaction);
 
-        // 11. Log sécurisé (pas de montant ni d'infos sensibles)
+        // 11. Mettre à jour les agrégats journaliers dans la même transaction
+        fromDailyTotal.addOutgoing(amount);
+        toDailyTotal.addIncoming(amount);
+
+        // 12. Log sécurisé (pas de montant ni d'infos sensibles)
         logger.info("Transfert effectué - Transaction ID: {}", savedTransaction.getId());
 
         return savedTransaction;
@@ -189,6 +214,30 @@ public class SecureTransferService {
                 .orElse(null);
     }
 
+    /**
+     * Relevé mensuel (entrées, sorties, nombre) de l'utilisateur AUTHENTIFIÉ,
+     * sans parcourir l'historique des transactions.
+     */
+    @Transactional(readOnly = true)
+    public MonthlyStatement getMyMonthlyStatement(YearMonth month) {
+        Long currentUserId = getCurrentAuthenticatedUserId();
+        return dailyTotalRepository.getMonthlyStatement(currentUserId, month);
+    }
+
+    /**
+     * Relevé mensuel d'un utilisateur (avec vérification des droits).
+     */
+    @Transactional(readOnly = true)
+    public MonthlyStatement getMonthlyStatement(Long userId, YearMonth month) {
+        Long currentUserId = getCurrentAuthenticatedUserId();
+
+        if (!userId.equals(currentUserId) && !isCurrentUserAdmin()) {
+            throw new AccessDeniedException("Accès non autorisé");
+        }
+
+        return dailyTotalRepository.getMonthlyStatement(userId, month);
+    }
+
     // ========================================
     // MÉTHODES PRIVÉES
     // ========================================
@@ -197,31 +246,31 @@ public class SecureTransferService {
      * Récupère l'ID de l'utilisateur actuellement authentifié.
      */
     private Long getCurrentAuthenticatedUserId() {
+        return currentUser().getId();
+    }
+
+    /**
+     * Vérifie si l'utilisateur actuel est admin (bit du masque de rôles).
+     */
+    private boolean isCurrentUserAdmin() {
+        return currentUser().hasRole(Role.ADMIN);
+    }
+
+    /**
+     * Principal posé par SecureUserDetailsService à la connexion.
+     */
+    private CustomUserDetails currentUser() {
         var authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
             throw new AccessDeniedException("Non authentifié");
         }
-        
-        // Supposons que le principal contient l'ID utilisateur
-        // En pratique, adapter selon votre UserDetails
         Object principal = authentication.getPrincipal();
         if (principal instanceof CustomUserDetails) {
-            return ((CustomUserDetails) principal).getId();
+            return (CustomUserDetails) principal;
         }
-        
         throw new IllegalStateException("Impossible de déterminer l'utilisateur");
     }
 
-    /**
-     * Vérifie si l'utilisateur actuel est admin.
-     */
-    private boolean isCurrentUserAdmin() {
-        var authentication = SecurityContextHolder.getContext().getAuthentication();
-        return authentication != null && 
-               authentication.getAuthorities().stream()
-                   .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-    }
-
     /**
      * Valide le montant du transfert.
      */
@@ -262,9 +311,4 @@ public class SecureTransferService {
                 .replaceAll("[<>\"'&]", "")
                 .trim();
     }
-
-    // Interface interne pour le UserDetails personnalisé
-    public interface CustomUserDetails {
-        Long getId();
-    }
 }
@@ -0,0 +1,58 @@
+package com.example.secure.service;
+
+import com.example.secure.model.Role;
+import com.example.secure.model.User;
+import com.example.secure.repository.SecureUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Chargement des utilisateurs pour le login Spring Security.
+ *
+ * CORRECTIONS APPLIQUÉES :
+ * - Mot de passe comparé par le PasswordEncoder (BCrypt), jamais en SQL
+ * - Compte inactif ou verrouillé refusé avant toute vérification
+ * - Principal CustomUserDetails : id et masque de rôles calculés une fois
+ * - Re-hachage transparent : DaoAuthenticationProvider appelle
+ *   updatePassword quand AdaptivePasswordEncoder.upgradeEncoding signale un
+ *   hash d'un autre coût que celui configuré
+ */
+@Service
+public class SecureUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecureUserDetailsService.class);
+
+    @Autowired
+    private SecureUserRepository userRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserDetails loadUserByUsername(String username) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("Identifiants invalides"));
+        return toUserDetails(user, user.getPasswordHash());
+    }
+
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails details, String newPasswordHash) {
+        User user = userRepository.findByUsername(details.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("Identifiants invalides"));
+        user.setPasswordHash(newPasswordHash);
+        userRepository.save(user);
+        logger.info("Mot de passe re-haché au coût configuré pour l'utilisateur {}", user.getId());
+        return toUserDetails(user, newPasswordHash);
+    }
+
+    private static UserDetails toUserDetails(User user, String passwordHash) {
+        return new CustomUserDetails(user.getId(), user.getUsername(), passwordHash,
+                Role.bitOf(user.getRole()), user.isActive(), user.isLocked());
+    }
+}
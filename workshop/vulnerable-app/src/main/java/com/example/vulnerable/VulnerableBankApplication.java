@@ -2,6 +2,7 @@ package com.example.vulnerable;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableAsync;
 
 /**
  * Application bancaire vulnérable pour formation DevSecOps.
@@ -20,6 +21,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * - Path Traversal
  */
 @SpringBootApplication
+@EnableAsync
 public class VulnerableBankApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,29 @@
+package com.example.vulnerable.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.web.http.CookieSerializer;
+import org.springframework.session.web.http.DefaultCookieSerializer;
+
+/**
+ * Sessions HTTP hors du conteneur (app.session.store=mapped) : Spring Session
+ * remplace les sessions Tomcat par MappedSessionRepository.
+ *
+ * Le cookie garde le nom et le format de Tomcat (JSESSIONID, identifiant en
+ * clair) : clients et scans DAST voient la même application.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.session.store", havingValue = "mapped")
+@EnableSpringHttpSession
+public class SessionStoreConfig {
+
+    @Bean
+    public CookieSerializer cookieSerializer() {
+        DefaultCookieSerializer serializer = new DefaultCookieSerializer();
+        serializer.setCookieName("JSESSIONID");
+        serializer.setUseBase64Encoding(false);
+        return serializer;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.vulnerable.config;
+
+import com.example.vulnerable.model.AuthToken;
+import com.example.vulnerable.service.AuthTokenService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionContext;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mode sans session : aucune HttpSession n'est créée côté serveur.
+ *
+ * Le jeton (cookie auth_token ou en-tête Authorization: Bearer) est vérifié
+ * à chaque requête ; les contrôleurs reçoivent une HttpSession propre à la
+ * requête, remplie depuis le jeton (userId, role) et oubliée à la fin. Ils
+ * lisent donc les mêmes attributs qu'en mode session, sans modification.
+ * invalidate() révoque le jeton.
+ *
+ * Le rôle est celui inscrit dans le jeton à la connexion : une promotion ou
+ * une rétrogradation (/admin/promote, mass assignment de role) ne prend
+ * effet qu'à l'expiration du jeton (app.auth.token.ttl-minutes) ou à la
+ * connexion suivante. C'est le prix d'une vérification sans accès à la base ;
+ * la durée des jetons borne le délai d'un retrait de droits.
+ */
+@Component
+@ConditionalOnProperty(name = "app.auth.stateless.enabled", havingValue = "true")
+public class StatelessAuthFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE = "auth_token";
+
+    private static final String BEARER = "Bearer ";
+
+    @Autowired
+    private AuthTokenService authTokens;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        AuthToken token = authTokens.verify(readToken(request));
+        chain.doFilter(new TokenRequest(request, new TokenSession(request.getServletContext(), token)), response);
+    }
+
+    private static String readToken(HttpServletRequest request) {
+        String authorization = request.getHeader("Authorization");
+        if (authorization != null && authorization.startsWith(BEARER)) {
+            return authorization.substring(BEARER.length());
+        }
+        Cookie cookie = WebUtils.getCookie(request, COOKIE);
+        return cookie == null ? null : cookie.getValue();
+    }
+
+    private static final class TokenRequest extends HttpServletRequestWrapper {
+
+        private final TokenSession session;
+
+        TokenRequest(HttpServletRequest request, TokenSession session) {
+            super(request);
+            this.session = session;
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            return session.valid || create ? session : null;
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return session;
+        }
+
+        @Override
+        public String changeSessionId() {
+            return session.getId();
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            return session.token != null;
+        }
+    }
+
+    /**
+     * Session de la durée d'une requête, adossée au jeton.
+     */
+    private final class TokenSession implements HttpSession {
+
+        private final ServletContext servletContext;
+
+        private final AuthToken token;
+
+        private final Map<String, Object> attributes = new HashMap<>();
+
+        private final long creationTime = System.currentTimeMillis();
+
+        private boolean valid = true;
+
+        TokenSession(ServletContext servletContext, AuthToken token) {
+            this.servletContext = servletContext;
+            this.token = token;
+            if (token != null) {
+                attributes.put("userId", token.getUserId());
+                attributes.put("role", token.getRole());
+            }
+        }
+
+        @Override
+        public long getCreationTime() {
+            return creationTime;
+        }
+
+        @Override
+        public String getId() {
+            return token == null ? "" : Long.toHexString(token.getTokenId());
+        }
+
+        @Override
+        public long getLastAccessedTime() {
+            return creationTime;
+        }
+
+        @Override
+        public ServletContext getServletContext() {
+            return servletContext;
+        }
+
+        @Override
+        public void setMaxInactiveInterval(int interval) {
+            // Durée fixée par l'expiration du jeton
+        }
+
+        @Override
+        public int getMaxInactiveInterval() {
+            return (int) authTokens.getTtlSeconds();
+        }
+
+        @Override
+        @Deprecated
+        public HttpSessionContext getSessionContext() {
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        @Deprecated
+        public Object getValue(String name) {
+            return getAttribute(name);
+        }
+
+        @Override
+        public Enumeration<String> getAttributeNames() {
+            return Collections.enumeration(attributes.keySet());
+        }
+
+        @Override
+        @Deprecated
+        public String[] getValueNames() {
+            return attributes.keySet().toArray(new String[0]);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            attributes.put(name, value);
+        }
+
+        @Override
+        @Deprecated
+        public void putValue(String name, Object value) {
+            setAttribute(name, value);
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            attributes.remove(name);
+        }
+
+        @Override
+        @Deprecated
+        public void removeValue(String name) {
+            removeAttribute(name);
+        }
+
+        @Override
+        public void invalidate() {
+            if (token != null) {
+                authTokens.revoke(token);
+            }
+            attributes.clear();
+            valid = false;
+        }
+
+        @Override
+        public boolean isNew() {
+            return token == null;
+        }
+    }
+}
@@ -1,16 +1,32 @@
 package com.example.vulnerable.controller;
 
+import com.example.vulnerable.model.FilePage;
 import com.example.vulnerable.model.User;
+import com.example.vulnerable.model.UserPage;
 import com.example.vulnerable.service.FileService;
+import com.example.vulnerable.service.ImageJobQueue;
 import com.example.vulnerable.service.TransferService;
+import com.example.vulnerable.service.UserImportPipeline;
 import com.example.vulnerable.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Contrôleur d'administration.
@@ -34,12 +50,19 @@ public class AdminController {
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private UserImportPipeline importPipeline;
+
+    @Autowired
+    private ImageJobQueue imageJobs;
+
     /**
      * VULNÉRABLE : Vérification d'admin basée sur cookie
      */
     @GetMapping
     public String adminDashboard(HttpSession session,
                                 @CookieValue(value = "role", defaultValue = "") String role,
+                                @RequestParam(required = false) Long cursor,
                                 Model model) {
         
         // VULNÉRABILITÉ : Vérification basée sur cookie client !
@@ -49,13 +72,42 @@ public class AdminController {
             return "redirect:/dashboard";
         }
 
-        List<User> users = userService.getAllUsers();
-        model.addAttribute("users", users);
-        model.addAttribute("files", fileService.listFiles());
+        UserPage<?> users = userService.getUserPage(cursor, null);
+        model.addAttribute("users", users.getUsers());
+        // VULNÉRABILITÉ : Email, solde et SSN affichés sauf avec app.users.projection.enabled
+        model.addAttribute("sensitive", !userService.isProjectionEnabled());
+        model.addAttribute("nextCursor", users.getNextCursor());
+        model.addAttribute("files", fileService.listFiles(null, null, false, null, null).getFiles());
         
         return "admin";
     }
 
+    /**
+     * Catalogue des fichiers uploadés : sort = name, size ou date, order = asc ou desc.
+     */
+    @GetMapping("/files")
+    @ResponseBody
+    public ResponseEntity<FilePage> listFiles(
+            @CookieValue(value = "role", defaultValue = "") String role,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(defaultValue = "name") String sort,
+            @RequestParam(defaultValue = "asc") String order,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        if (!"ADMIN".equals(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!fileService.isCatalogReady()) {
+            // Parcours initial en cours : une liste vide serait trompeuse
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        try {
+            return ResponseEntity.ok(fileService.listFiles(prefix, sort, "desc".equals(order), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * VULNÉRABLE : Modification de solde sans vérification admin
      */
@@ -107,17 +159,116 @@ public class AdminController {
         return "Utilisateur non trouvé";
     }
 
+    /**
+     * VULNÉRABLE : Export complet (mots de passe, SSN, cartes) derrière le cookie role
+     */
+    @GetMapping(value = "/export-users", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @CookieValue(value = "role", defaultValue = "") String role) {
+        if (!"ADMIN".equals(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=users.vbk")
+                .body(out -> userService.exportUsers(out));
+    }
+
+    /**
+     * VULNÉRABLE : Import en masse derrière le cookie role
+     *
+     * Renvoyer le même flux avec le même importId reprend après le dernier
+     * point de reprise.
+     */
+    @PostMapping(value = "/import-users", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> importUsers(
+            @CookieValue(value = "role", defaultValue = "") String role,
+            @RequestParam(required = false) String importId,
+            HttpServletRequest request) throws IOException {
+        if (!"ADMIN".equals(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        String id = importId == null ? UUID.randomUUID().toString() : importId;
+        return ResponseEntity.ok(importPipeline.run(id, request.getInputStream()));
+    }
+
+    /**
+     * Avancement d'un import (compteurs par étape, débit).
+     */
+    @GetMapping("/import-users/status")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> importStatus(
+            @CookieValue(value = "role", defaultValue = "") String role,
+            @RequestParam String importId) {
+        if (!"ADMIN".equals(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Map<String, Object> status = importPipeline.getStatus(importId);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
     /**
      * VULNÉRABLE : Lecture de fichier avec Path Traversal
+     *
+     * Le fichier est envoyé tel quel (octets, type détecté), sans être chargé
+     * en mémoire. Supporte If-None-Match (304) et une plage Range (206) ;
+     * plusieurs plages donnent le fichier entier.
      */
     @GetMapping("/file")
-    @ResponseBody
-    public String readFile(@RequestParam String filename,
-                          @CookieValue(value = "role", defaultValue = "") String role) {
+    public ResponseEntity<StreamingResponseBody> readFile(@RequestParam String filename,
+                          @CookieValue(value = "role", defaultValue = "") String role,
+                          @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                          @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         
         // VULNÉRABILITÉ : Path Traversal
         // filename = "../../../etc/passwd" expose le fichier système
-        return fileService.readFile(filename);
+        FileService.StoredFile file = fileService.openFile(filename);
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = file.getEtag();
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        long size = file.getSize();
+        long start = 0;
+        long length = size;
+        HttpStatus status = HttpStatus.OK;
+        // If-Range : la plage ne vaut que pour la version connue du client
+        if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            if (ranges.size() == 1) {
+                HttpRange requested = ranges.get(0);
+                start = requested.getRangeStart(size);
+                if (start >= size) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                            .build();
+                }
+                length = requested.getRangeEnd(size) - start + 1;
+                status = HttpStatus.PARTIAL_CONTENT;
+            }
+        }
+
+        long from = start;
+        long count = length;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                .contentType(MediaType.parseMediaType(file.getContentType()))
+                .contentLength(length)
+                .eTag(etag)
+                .lastModified(file.getLastModified())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + length - 1) + "/" + size);
+        }
+        return response.body(out -> fileService.transfer(file, from, count, out));
     }
 
     /**
@@ -134,6 +285,115 @@ public class AdminController {
         return success ? "Fichier écrit" : "Erreur";
     }
 
+    /**
+     * VULNÉRABLE : Écriture par morceaux avec Path Traversal (destination libre)
+     *
+     * Protocole : POST /admin/uploads?filename=... ouvre l'envoi, chaque
+     * PUT /admin/uploads/{id}?offset=N ajoute le corps de la requête,
+     * GET /admin/uploads/{id} donne l'offset de reprise, POST
+     * /admin/uploads/{id}/complete (sha256 facultatif) publie le fichier.
+     * Un envoi sans morceau pendant app.files.upload.ttl-minutes est
+     * abandonné : son identifiant répond ensuite 404.
+     */
+    @PostMapping("/uploads")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> startUpload(
+            @CookieValue(value = "role", defaultValue = "") String role,
+            @RequestParam String filename) throws IOException {
+        if (!"ADMIN".equals(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(uploadStatus(fileService.startUpload(filename)));
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> uploadStatus(
+            @CookieValue(value = "role", defaultValue = "") String role,
+            @PathVariable String uploadId) {
+        if (!"ADMIN".equals(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        FileService.Upload upload = fileService.getUpload(uploadId);
+        return upload == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(uploadStatus(upload));
+    }
+
+    /**
+     * 409 si offset n'est pas l'offset courant, 503 si la réserve de buffers
+     * reste vide (le client réessaie plus tard).
+     */
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> uploadChunk(
+            @CookieValue(value = "role", defaultValue = "") String role,
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            HttpServletRequest request) throws IOException {
+        if (!"ADMIN".equals(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        FileService.Upload upload = fileService.getUpload(uploadId);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            fileService.appendChunk(upload, offset, request.getInputStream());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(uploadStatus(upload));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(uploadStatus(upload));
+        }
+        return ResponseEntity.ok(uploadStatus(upload));
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> completeUpload(
+            @CookieValue(value = "role", defaultValue = "") String role,
+            @PathVariable String uploadId,
+            @RequestParam(required = false) String sha256) throws IOException {
+        if (!"ADMIN".equals(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        FileService.Upload upload = fileService.getUpload(uploadId);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> result = uploadStatus(upload);
+        try {
+            result.put("sha256", fileService.completeUpload(upload, sha256));
+        } catch (IllegalStateException e) {
+            result.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    @ResponseBody
+    public ResponseEntity<Void> abortUpload(
+            @CookieValue(value = "role", defaultValue = "") String role,
+            @PathVariable String uploadId) throws IOException {
+        if (!"ADMIN".equals(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        FileService.Upload upload = fileService.getUpload(uploadId);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+        fileService.abortUpload(upload);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static Map<String, Object> uploadStatus(FileService.Upload upload) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("uploadId", upload.getId());
+        status.put("offset", upload.getOffset());
+        return status;
+    }
+
     /**
      * VULNÉRABLE : Command Injection via info fichier
      */
@@ -147,14 +407,45 @@ public class AdminController {
 
     /**
      * VULNÉRABLE : Command Injection via traitement d'image
+     *
+     * La conversion est mise en file (ImageJobQueue) : la réponse donne le
+     * job à suivre sur /admin/image-jobs/{id}. 202 tant qu'il n'est pas
+     * terminé, 503 si la file est pleine.
      */
     @PostMapping("/process-image")
     @ResponseBody
-    public String processImage(@RequestParam String filename,
-                              @RequestParam String format) {
+    public ResponseEntity<Map<String, Object>> processImage(@RequestParam String filename,
+                              @RequestParam String format,
+                              @RequestParam(defaultValue = "NORMAL") ImageJobQueue.Priority priority) {
         // VULNÉRABILITÉ : Command Injection
-        boolean success = fileService.processImage(filename, format);
-        return success ? "Image traitée" : "Erreur";
+        ImageJobQueue.ImageJob job;
+        try {
+            job = imageJobs.submit(filename, format, priority);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+        return ResponseEntity.status(job.isFinished() ? HttpStatus.OK : HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/admin/image-jobs/" + job.getId())
+                .body(job.toMap());
+    }
+
+    /**
+     * File de conversion : profondeur par priorité, compteurs, attente et
+     * durée des conversions (moyenne, max, percentiles récents).
+     */
+    @GetMapping("/image-jobs/metrics")
+    @ResponseBody
+    public Map<String, Object> imageJobMetrics() {
+        return imageJobs.getMetrics();
+    }
+
+    @GetMapping("/image-jobs/{id}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> imageJobStatus(@PathVariable String id) {
+        ImageJobQueue.ImageJob job = imageJobs.get(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job.toMap());
     }
 
     /**
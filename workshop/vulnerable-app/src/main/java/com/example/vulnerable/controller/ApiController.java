@@ -1,6 +1,8 @@
 package com.example.vulnerable.controller;
 
 import com.example.vulnerable.model.User;
+import com.example.vulnerable.model.UserPage;
+import com.example.vulnerable.service.BankStatistics;
 import com.example.vulnerable.service.UserService;
 import org.apache.commons.text.StringSubstitutor;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,14 +32,19 @@ public class ApiController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private BankStatistics statistics;
+
     /**
      * VULNÉRABLE : Liste tous les utilisateurs sans authentification
      */
     @GetMapping("/users")
-    public List<User> getAllUsers() {
+    public UserPage<?> getAllUsers(@RequestParam(required = false) Long cursor,
+                                @RequestParam(required = false) Integer limit) {
         // VULNÉRABILITÉ : Pas d'authentification requise
         // VULNÉRABILITÉ : Expose toutes les données sensibles (mots de passe, SSN, etc.)
-        return userService.getAllUsers();
+        // sauf avec app.users.projection.enabled ; énumération complète en suivant nextCursor
+        return userService.getUserPage(cursor, limit);
     }
 
     /**
@@ -109,7 +116,10 @@ public class ApiController {
         health.put("javaVersion", System.getProperty("java.version"));
         health.put("osName", System.getProperty("os.name"));
         health.put("osVersion", System.getProperty("os.version"));
-        health.put("totalUsers", userService.getAllUsers().size());
+        // Compteurs en mémoire : une sonde ne touche jamais la base
+        health.put("totalUsers", statistics.getUserCount());
+        health.put("totalTransactions", statistics.getTransactionCount());
+        health.put("lastCommit", statistics.getLastCommit());
         
         // VULNÉRABILITÉ : Expose la mémoire JVM
         Runtime runtime = Runtime.getRuntime();
@@ -120,6 +130,14 @@ public class ApiController {
         return health;
     }
 
+    /**
+     * Compteurs hits/miss du cache de second niveau des utilisateurs
+     */
+    @GetMapping("/cache/stats")
+    public Map<String, Object> cacheStats() {
+        return userService.getCacheStatistics();
+    }
+
     /**
      * VULNÉRABLE : Mise à jour de profil avec Mass Assignment
      */
@@ -1,6 +1,8 @@
 package com.example.vulnerable.controller;
 
+import com.example.vulnerable.config.StatelessAuthFilter;
 import com.example.vulnerable.model.User;
+import com.example.vulnerable.service.AuthTokenService;
 import com.example.vulnerable.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -28,6 +30,9 @@ public class AuthController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AuthTokenService authTokens;
+
     @GetMapping("/")
     public String home() {
         return "redirect:/login";
@@ -56,13 +61,22 @@ public class AuthController {
         User user = userService.login(username, password);
         
         if (user != null) {
-            // VULNÉRABILITÉ : Session Fixation
-            // La session n'est pas régénérée après authentification
-            HttpSession session = request.getSession();
-            session.setAttribute("user", user);
-            session.setAttribute("userId", user.getId());
-            session.setAttribute("username", user.getUsername());
-            session.setAttribute("role", user.getRole());
+            if (authTokens.isEnabled()) {
+                // Mode sans session : id et rôle dans un jeton signé, rien côté serveur
+                Cookie tokenCookie = new Cookie(StatelessAuthFilter.COOKIE, authTokens.issue(user));
+                tokenCookie.setMaxAge((int) authTokens.getTtlSeconds());
+                tokenCookie.setPath("/");
+                tokenCookie.setHttpOnly(true);
+                response.addCookie(tokenCookie);
+            } else {
+                // VULNÉRABILITÉ : Session Fixation
+                // La session n'est pas régénérée après authentification
+                // Identifiants seulement (pas l'entité) : compatibles avec app.session.store=mapped
+                HttpSession session = request.getSession();
+                session.setAttribute("userId", user.getId());
+                session.setAttribute("username", user.getUsername());
+                session.setAttribute("role", user.getRole());
+            }
 
             // VULNÉRABILITÉ : Cookie non sécurisé
             Cookie userCookie = new Cookie("username", user.getUsername());
@@ -129,8 +143,15 @@ public class AuthController {
     public String logout(HttpServletRequest request, HttpServletResponse response) {
         HttpSession session = request.getSession(false);
         if (session != null) {
+            // Mode sans session : révoque le jeton
             session.invalidate();
         }
+        if (authTokens.isEnabled()) {
+            Cookie tokenCookie = new Cookie(StatelessAuthFilter.COOKIE, null);
+            tokenCookie.setMaxAge(0);
+            tokenCookie.setPath("/");
+            response.addCookie(tokenCookie);
+        }
         
         // Supprimer les cookies
         Cookie userCookie = new Cookie("username", null);
@@ -1,15 +1,27 @@
 package com.example.vulnerable.controller;
 
 import com.example.vulnerable.model.Transaction;
+import com.example.vulnerable.model.TransactionPage;
 import com.example.vulnerable.model.User;
+import com.example.vulnerable.model.UserSummary;
+import com.example.vulnerable.service.BinaryCodec;
 import com.example.vulnerable.service.TransferService;
 import com.example.vulnerable.service.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
@@ -31,8 +43,12 @@ public class DashboardController {
     @Autowired
     private TransferService transferService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping
-    public String dashboard(HttpSession session, Model model) {
+    public String dashboard(@RequestParam(required = false) String cursor,
+                            HttpSession session, Model model) {
         Long userId = (Long) session.getAttribute("userId");
         if (userId == null) {
             return "redirect:/login";
@@ -43,10 +59,11 @@ public class DashboardController {
             return "redirect:/login";
         }
 
-        List<Transaction> transactions = transferService.getTransactionHistory(userId);
+        TransactionPage history = historyPage(userId, cursor);
         
         model.addAttribute("user", user);
-        model.addAttribute("transactions", transactions);
+        model.addAttribute("transactions", history.getTransactions());
+        model.addAttribute("nextCursor", history.getNextCursor());
         
         return "dashboard";
     }
@@ -56,6 +73,7 @@ public class DashboardController {
      */
     @GetMapping("/profile/{id}")
     public String viewProfile(@PathVariable Long id, 
+                             @RequestParam(required = false) String cursor,
                              HttpSession session,
                              Model model) {
         // VULNÉRABILITÉ : Pas de vérification que l'utilisateur
@@ -67,8 +85,10 @@ public class DashboardController {
         }
         
         // VULNÉRABILITÉ : Expose toutes les données sensibles
+        TransactionPage history = historyPage(id, cursor);
         model.addAttribute("profileUser", user);
-        model.addAttribute("transactions", transferService.getTransactionHistory(id));
+        model.addAttribute("transactions", history.getTransactions());
+        model.addAttribute("nextCursor", history.getNextCursor());
         
         return "profile";
     }
@@ -123,14 +143,23 @@ public class DashboardController {
         }
 
         User user = userService.findById(userId);
-        List<User> allUsers = userService.getAllUsers();
-        
         model.addAttribute("user", user);
-        model.addAttribute("users", allUsers);
         
         return "transfer";
     }
 
+    /**
+     * Suggestions de destinataires (saisie semi-automatique de transfer.html)
+     */
+    @GetMapping("/recipients")
+    @ResponseBody
+    public List<UserSummary> recipients(@RequestParam String q, HttpSession session) {
+        if (session.getAttribute("userId") == null) {
+            return List.of();
+        }
+        return userService.suggestUsers(q);
+    }
+
     /**
      * VULNÉRABLE : Transfert sans vérification d'autorisation
      */
@@ -189,9 +218,57 @@ public class DashboardController {
      */
     @GetMapping("/history/{userId}")
     @ResponseBody
-    public List<Transaction> getHistory(@PathVariable Long userId) {
+    public ResponseEntity<TransactionPage> getHistory(@PathVariable Long userId,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit) {
+        // VULNÉRABILITÉ : IDOR - pas de vérification des droits
+        try {
+            return ResponseEntity.ok(transferService.getTransactionHistoryPage(userId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * VULNÉRABLE : Historique complet en JSON, écrit au fil du curseur JDBC
+     */
+    @GetMapping(value = "/history/{userId}/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public StreamingResponseBody streamHistory(@PathVariable Long userId) {
         // VULNÉRABILITÉ : IDOR - pas de vérification des droits
-        return transferService.getTransactionHistory(userId);
+        return out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                transferService.streamTransactionHistory(userId, transaction -> {
+                    try {
+                        generator.writeObject(transaction);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+    }
+
+    /**
+     * VULNÉRABLE : Historique complet au format BinaryCodec
+     */
+    @GetMapping(value = "/history/{userId}/export", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @ResponseBody
+    public StreamingResponseBody exportHistory(@PathVariable Long userId) {
+        // VULNÉRABILITÉ : IDOR - pas de vérification des droits
+        return out -> {
+            BinaryCodec.Encoder encoder = BinaryCodec.encoder(out, BinaryCodec.TRANSACTION);
+            transferService.streamTransactionHistory(userId, transaction -> {
+                try {
+                    encoder.writeTransaction(transaction);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            encoder.flush();
+        };
     }
 
     /**
@@ -203,4 +280,15 @@ public class DashboardController {
         // VULNÉRABILITÉ : IDOR
         return transferService.getBalance(userId);
     }
+
+    /**
+     * Page d'historique des vues ; un curseur modifié par le client donne une 400.
+     */
+    private TransactionPage historyPage(Long userId, String cursor) {
+        try {
+            return transferService.getTransactionHistoryPage(userId, cursor, null);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,153 @@
+package com.example.vulnerable.controller;
+
+import com.example.vulnerable.model.BatchTransfer;
+import com.example.vulnerable.model.BatchTransferResult;
+import com.example.vulnerable.service.TransferService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * API de transferts par lot (virements de paie).
+ *
+ * Le corps est lu ligne à ligne, en NDJSON par défaut ou en CSV
+ * (Content-Type: text/csv, colonnes fromUserId,toUserId,amount,description).
+ * Les lignes sont appliquées par groupes, un commit par groupe, et le résultat
+ * de chaque ligne est écrit en NDJSON dès que son groupe est validé.
+ *
+ * VULNÉRABILITÉS INTENTIONNELLES :
+ * - Broken Access Control (IDOR) : comme /dashboard/transfer, le compte
+ *   source de chaque ligne n'est pas vérifié
+ */
+@RestController
+@RequestMapping("/api/transfers")
+public class TransferApiController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final String CSV = "text/csv";
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.transfers.batch.group-size:1000}")
+    private int groupSize;
+
+    /**
+     * VULNÉRABLE : IDOR - fromUserId libre sur chaque ligne
+     */
+    @PostMapping(value = "/batch", consumes = {NDJSON, MediaType.APPLICATION_JSON_VALUE, CSV},
+            produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> batchTransfer(
+            @RequestHeader(value = "Content-Type", defaultValue = NDJSON) String contentType,
+            HttpServletRequest request,
+            HttpSession session) {
+
+        Long currentUserId = (Long) session.getAttribute("userId");
+        if (currentUserId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        boolean csv = contentType.startsWith(CSV);
+
+        StreamingResponseBody body = out -> {
+            try (BufferedReader reader = new BufferedReader(
+                         new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                // Une valeur JSON par ligne, sans le séparateur par défaut (espace)
+                generator.setRootValueSeparator(null);
+
+                List<BatchTransfer> group = new ArrayList<>(groupSize);
+                long lineNumber = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank() || (csv && lineNumber == 1 && isCsvHeader(line))) {
+                        continue;
+                    }
+                    try {
+                        group.add(requireFields(csv ? parseCsv(lineNumber, line) : parseJson(lineNumber, line)));
+                    } catch (IOException | RuntimeException e) {
+                        write(generator, BatchTransferResult.failed(lineNumber, "Ligne invalide : " + e.getMessage()));
+                        continue;
+                    }
+                    if (group.size() == groupSize) {
+                        writeAll(generator, transferService.transferBatch(group, currentUserId));
+                        group.clear();
+                    }
+                }
+                if (!group.isEmpty()) {
+                    writeAll(generator, transferService.transferBatch(group, currentUserId));
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private BatchTransfer parseJson(long lineNumber, String line) throws IOException {
+        BatchTransfer transfer = objectMapper.readValue(line, BatchTransfer.class);
+        transfer.setLine(lineNumber);
+        return transfer;
+    }
+
+    private static BatchTransfer parseCsv(long lineNumber, String line) {
+        // La description est la dernière colonne : elle peut contenir des virgules
+        String[] fields = line.split(",", 4);
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("3 colonnes attendues au minimum");
+        }
+        return new BatchTransfer(lineNumber,
+                Long.valueOf(fields[0].trim()),
+                Long.valueOf(fields[1].trim()),
+                Double.valueOf(fields[2].trim()),
+                fields.length == 4 ? fields[3].trim() : null);
+    }
+
+    /**
+     * Une ligne incomplète est rejetée ici : dans le groupe, elle ferait échouer
+     * le chargement des comptes et donc le commit des autres lignes.
+     */
+    private static BatchTransfer requireFields(BatchTransfer transfer) {
+        if (transfer.getFromUserId() == null || transfer.getToUserId() == null || transfer.getAmount() == null) {
+            throw new IllegalArgumentException("fromUserId, toUserId et amount sont obligatoires");
+        }
+        return transfer;
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return !line.isEmpty() && !Character.isDigit(line.trim().charAt(0));
+    }
+
+    private static void writeAll(JsonGenerator generator, List<BatchTransferResult> results) throws IOException {
+        for (BatchTransferResult result : results) {
+            write(generator, result);
+        }
+        // Les résultats du groupe partent au client sans attendre la fin du lot
+        generator.flush();
+    }
+
+    private static void write(JsonGenerator generator, BatchTransferResult result) throws IOException {
+        generator.writeObject(result);
+        generator.writeRaw('\n');
+    }
+}
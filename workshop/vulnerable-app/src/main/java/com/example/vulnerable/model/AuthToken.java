@@ -0,0 +1,25 @@
+package com.example.vulnerable.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Contenu d'un jeton d'authentification signé (mode sans session) :
+ * de quoi servir une requête sans lire la base ni une session serveur.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthToken {
+
+    private Long userId;
+
+    private String role;
+
+    // Identifiant aléatoire du jeton, clé de révocation
+    private long tokenId;
+
+    // Expiration, secondes depuis l'epoch
+    private long expiresAt;
+}
@@ -0,0 +1,26 @@
+package com.example.vulnerable.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ligne d'un lot de transferts (/api/transfers/batch).
+ *
+ * line est le numéro de ligne dans le corps de la requête, repris dans le résultat.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransfer {
+
+    private long line;
+
+    private Long fromUserId;
+
+    private Long toUserId;
+
+    private Double amount;
+
+    private String description;
+}
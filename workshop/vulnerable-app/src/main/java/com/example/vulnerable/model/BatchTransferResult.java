@@ -0,0 +1,33 @@
+package com.example.vulnerable.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Résultat d'une ligne d'un lot de transferts : COMPLETED avec l'identifiant
+ * de la transaction créée, ou FAILED avec le message d'erreur.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchTransferResult {
+
+    private long line;
+
+    private String status;
+
+    private Long transactionId;
+
+    private String error;
+
+    public static BatchTransferResult completed(long line, Transaction transaction) {
+        return new BatchTransferResult(line, "COMPLETED", transaction.getId(), null);
+    }
+
+    public static BatchTransferResult failed(long line, String error) {
+        return new BatchTransferResult(line, "FAILED", null, error);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.vulnerable.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Point de reprise d'un traitement long, identifié par son nom.
+ *
+ * - "ledger-journal" : dernière séquence du journal du ledger persistée,
+ *   mise à jour dans la même transaction que le lot correspondant
+ * - "user-import:{id}" : nombre d'enregistrements d'un import en masse
+ *   entièrement traités
+ */
+@Entity
+@Table(name = "checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Checkpoint {
+
+    @Id
+    private String name;
+
+    private long lastSequence;
+}
@@ -0,0 +1,25 @@
+package com.example.vulnerable.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fichier du répertoire d'upload tel que connu du catalogue.
+ *
+ * sha256 vaut null tant que l'empreinte du contenu n'a pas été calculée
+ * (calcul en tâche de fond après chaque création ou modification).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileEntry {
+
+    private String name;
+
+    private long size;
+
+    private long lastModified;
+
+    private String sha256;
+}
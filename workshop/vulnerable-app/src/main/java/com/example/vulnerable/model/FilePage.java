@@ -0,0 +1,23 @@
+package com.example.vulnerable.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page du catalogue des fichiers uploadés.
+ *
+ * nextCursor est à repasser tel quel (avec le même tri) pour obtenir la
+ * page suivante ; il vaut null sur la dernière page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilePage {
+
+    private List<FileEntry> files;
+
+    private String nextCursor;
+}
@@ -0,0 +1,34 @@
+package com.example.vulnerable.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Révocation d'un jeton d'authentification (déconnexion en mode sans
+ * session), partagée entre instances par la base. L'id croissant sert de
+ * curseur aux instances qui relisent la table.
+ */
+@Entity
+@Table(name = "revoked_tokens", indexes = @Index(name = "idx_revoked_expires", columnList = "expiresAt"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private long tokenId;
+
+    // Expiration du jeton, secondes depuis l'epoch : la ligne est inutile au-delà
+    private long expiresAt;
+}
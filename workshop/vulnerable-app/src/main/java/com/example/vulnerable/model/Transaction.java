@@ -12,7 +12,10 @@ import java.time.LocalDateTime;
  * Entité représentant une transaction bancaire.
  */
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+    @Index(name = "idx_tx_from_user_timestamp", columnList = "fromUserId, timestamp"),
+    @Index(name = "idx_tx_to_user_timestamp", columnList = "toUserId, timestamp")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,8 +23,13 @@ public class Transaction implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    // Séquence à allocation groupée : contrairement à IDENTITY, elle permet à
+    // Hibernate de regrouper les INSERT en lots JDBC (transferts par lot).
+    // La valeur par défaut de la colonne sert aux insertions SQL (data.sql).
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
+    @Column(columnDefinition = "BIGINT DEFAULT NEXT VALUE FOR transactions_seq")
     private Long id;
 
     @Column(nullable = false)
@@ -0,0 +1,61 @@
+package com.example.vulnerable.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page d'historique paginée par clé (timestamp, id).
+ *
+ * nextCursor est opaque pour le client ; il vaut null sur la dernière page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPage {
+
+    private List<Transaction> transactions;
+
+    private String nextCursor;
+
+    /**
+     * Curseur pointant juste après la transaction donnée (ordre décroissant).
+     */
+    public static String cursorAfter(Transaction last) {
+        String key = last.getTimestamp() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static LocalDateTime cursorTimestamp(String cursor) {
+        return decode(cursor, parts -> LocalDateTime.parse(parts[0]));
+    }
+
+    public static Long cursorId(String cursor) {
+        return decode(cursor, parts -> Long.valueOf(parts[1]));
+    }
+
+    /**
+     * Champ du curseur ; toute erreur de décodage ou de lecture (curseur
+     * modifié par le client) devient IllegalArgumentException.
+     */
+    private static <T> T decode(String cursor, Function<String[], T> field) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = key.split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            return field.apply(parts);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+    }
+}
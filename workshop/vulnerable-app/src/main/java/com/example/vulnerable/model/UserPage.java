@@ -0,0 +1,25 @@
+package com.example.vulnerable.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page de la liste des utilisateurs, paginée par identifiant croissant :
+ * entités User complètes, ou projections UserSummary avec
+ * app.users.projection.enabled.
+ *
+ * nextCursor est l'identifiant à passer pour obtenir la page suivante ;
+ * il vaut null sur la dernière page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPage<T> {
+
+    private List<T> users;
+
+    private Long nextCursor;
+}
@@ -0,0 +1,23 @@
+package com.example.vulnerable.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projection légère d'un utilisateur pour les listes (id, username, role).
+ *
+ * Construite directement par la requête JPQL : aucune entité User n'est
+ * chargée dans le contexte de persistance.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+
+    private Long id;
+
+    private String username;
+
+    private String role;
+}
@@ -0,0 +1,9 @@
+package com.example.vulnerable.repository;
+
+import com.example.vulnerable.model.Checkpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CheckpointRepository extends JpaRepository<Checkpoint, String> {
+}
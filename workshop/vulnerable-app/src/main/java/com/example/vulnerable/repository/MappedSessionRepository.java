@@ -0,0 +1,570 @@
+package com.example.vulnerable.repository;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.session.MapSession;
+import org.springframework.session.SessionRepository;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Sessions HTTP (Spring Session) dans une table de hachage hors tas, projetée
+ * en mémoire depuis un fichier local (app.session.store=mapped).
+ *
+ * Le tas ne contient que la session de la requête en cours : sa taille ne
+ * dépend plus du nombre de sessions, et les sessions survivent à un
+ * redémarrage (le fichier est rouvert tel quel).
+ *
+ * Format : un en-tête, puis {@code segments} tables indépendantes de
+ * {@code slots} emplacements de {@code slotSize} octets, en adressage
+ * ouvert (sondage linéaire). Chaque segment a son verrou ; un emplacement
+ * porte un CRC32, un emplacement corrompu (arrêt brutal en pleine écriture)
+ * est ignoré.
+ *
+ * Seuls les attributs simples sont enregistrés (Long, Integer, String,
+ * Boolean, Double) : des identifiants, jamais d'entité ni de sérialisation
+ * Java. Un attribut d'un autre type n'est pas conservé d'une requête à
+ * l'autre (avertissement au premier cas).
+ *
+ * Avec app.session.mapped.shared=true, chaque segment est aussi verrouillé
+ * dans le fichier (FileLock) : plusieurs instances sur la même machine (ou
+ * un volume partagé honorant les verrous) partagent leurs sessions, à la
+ * manière d'un magasin de sessions de cluster.
+ */
+@Repository
+@ConditionalOnProperty(name = "app.session.store", havingValue = "mapped")
+public class MappedSessionRepository implements SessionRepository<MapSession> {
+
+    private static final Logger logger = LogManager.getLogger(MappedSessionRepository.class);
+
+    private static final int MAGIC = 0x53455353;
+
+    private static final int VERSION = 1;
+
+    private static final int FILE_HEADER = 64;
+
+    private static final byte FREE = 0;
+
+    private static final byte USED = 1;
+
+    private static final byte DELETED = 2;
+
+    // état, longueur de l'id, id, création, dernier accès, inactivité max, longueur des attributs, CRC
+    private static final int MAX_ID = 64;
+
+    private static final int ID_OFFSET = 2;
+
+    private static final int CREATED_OFFSET = ID_OFFSET + MAX_ID;
+
+    private static final int ACCESSED_OFFSET = CREATED_OFFSET + 8;
+
+    private static final int MAX_INACTIVE_OFFSET = ACCESSED_OFFSET + 8;
+
+    private static final int LENGTH_OFFSET = MAX_INACTIVE_OFFSET + 4;
+
+    private static final int CRC_OFFSET = LENGTH_OFFSET + 4;
+
+    private static final int SLOT_HEADER = CRC_OFFSET + 4;
+
+    private static final byte TYPE_LONG = 'L';
+
+    private static final byte TYPE_INT = 'I';
+
+    private static final byte TYPE_STRING = 'S';
+
+    private static final byte TYPE_BOOLEAN = 'B';
+
+    private static final byte TYPE_DOUBLE = 'D';
+
+    @Value("${app.session.mapped.path:data/sessions/sessions.map}")
+    private String path;
+
+    @Value("${app.session.mapped.segments:64}")
+    private int segmentCount;
+
+    @Value("${app.session.mapped.slots-per-segment:1024}")
+    private int slotsPerSegment;
+
+    @Value("${app.session.mapped.slot-size:512}")
+    private int slotSize;
+
+    @Value("${app.session.mapped.shared:false}")
+    private boolean shared;
+
+    @Value("${server.servlet.session.timeout:30m}")
+    private Duration defaultMaxInactiveInterval;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer mapped;
+
+    private Segment[] segments;
+
+    private ScheduledExecutorService sweeper;
+
+    private final Set<String> skippedAttributes = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void open() throws IOException {
+        if (Integer.bitCount(segmentCount) != 1 || Integer.bitCount(slotsPerSegment) != 1) {
+            throw new IllegalStateException("segments et slots-per-segment doivent être des puissances de 2");
+        }
+        if (slotSize <= SLOT_HEADER) {
+            throw new IllegalStateException("slot-size doit dépasser " + SLOT_HEADER + " octets");
+        }
+        long segmentBytes = (long) slotsPerSegment * slotSize;
+        long size = FILE_HEADER + segmentCount * segmentBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Table de sessions limitée à 2 Go");
+        }
+
+        Path file = Paths.get(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (FileLock ignored = channel.lock(0, FILE_HEADER, false)) {
+            boolean compatible = channel.size() == size;
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            compatible = compatible && mapped.getInt(0) == MAGIC && mapped.getInt(4) == VERSION
+                    && mapped.getInt(8) == segmentCount && mapped.getInt(12) == slotsPerSegment
+                    && mapped.getInt(16) == slotSize;
+            if (!compatible) {
+                // Nouveau fichier ou géométrie modifiée : table vide
+                for (long offset = FILE_HEADER; offset < size; offset += slotSize) {
+                    mapped.put((int) offset, FREE);
+                }
+                mapped.putInt(4, VERSION).putInt(8, segmentCount).putInt(12, slotsPerSegment).putInt(16, slotSize);
+                mapped.putInt(0, MAGIC);
+                mapped.force();
+            }
+        }
+
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long offset = FILE_HEADER + i * segmentBytes;
+            mapped.position((int) offset).limit((int) (offset + segmentBytes));
+            segments[i] = new Segment(mapped.slice(), offset, segmentBytes);
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+        logger.info("Sessions hors tas dans {} ({} Mo, {} emplacements{})", file.toAbsolutePath(),
+                size >> 20, segmentCount * slotsPerSegment, shared ? ", partagé" : "");
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        sweeper.shutdownNow();
+        mapped.force();
+        channel.close();
+    }
+
+    @Override
+    public MapSession createSession() {
+        MapSession session = new MapSession();
+        session.setMaxInactiveInterval(defaultMaxInactiveInterval);
+        return session;
+    }
+
+    @Override
+    public void save(MapSession session) {
+        if (!session.getId().equals(session.getOriginalId())) {
+            deleteById(session.getOriginalId());
+        }
+        byte[] id = id(session.getId());
+        byte[] attributes = encode(session);
+        if (SLOT_HEADER + attributes.length > slotSize) {
+            throw new IllegalStateException("Session trop volumineuse (" + attributes.length + " octets d'attributs)");
+        }
+        Segment segment = segment(id);
+        segment.lock();
+        try {
+            if (!segment.put(id, session, attributes)) {
+                // Segment plein : purge des sessions expirées puis nouvel essai
+                segment.sweep(Instant.now());
+                if (!segment.put(id, session, attributes)) {
+                    throw new IllegalStateException("Table de sessions pleine");
+                }
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public MapSession findById(String sessionId) {
+        byte[] id = id(sessionId);
+        if (id == null) {
+            return null;
+        }
+        Segment segment = segment(id);
+        segment.lock();
+        try {
+            int slot = segment.find(id);
+            if (slot < 0) {
+                return null;
+            }
+            MapSession session = segment.read(slot, sessionId);
+            if (session == null || session.isExpired()) {
+                segment.delete(slot);
+                return null;
+            }
+            return session;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(String sessionId) {
+        byte[] id = id(sessionId);
+        if (id == null) {
+            return;
+        }
+        Segment segment = segment(id);
+        segment.lock();
+        try {
+            int slot = segment.find(id);
+            if (slot >= 0) {
+                segment.delete(slot);
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    private void sweep() {
+        Instant now = Instant.now();
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.sweep(now);
+            } catch (RuntimeException e) {
+                logger.warn("Purge des sessions expirées interrompue", e);
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    private Segment segment(byte[] id) {
+        return segments[hash(id) & (segmentCount - 1)];
+    }
+
+    private static byte[] id(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        return id.length == 0 || id.length > MAX_ID ? null : id;
+    }
+
+    private static int hash(byte[] id) {
+        int h = 0x811C9DC5;
+        for (byte b : id) {
+            h ^= b & 0xFF;
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private byte[] encode(MapSession session) {
+        ByteBuffer buffer = ByteBuffer.allocate(slotSize);
+        int count = 0;
+        buffer.putShort((short) 0);
+        try {
+            for (String name : session.getAttributeNames()) {
+                Object value = session.getAttribute(name);
+                byte type = typeOf(value);
+                if (type == 0) {
+                    if (skippedAttributes.add(name)) {
+                        logger.warn("Attribut de session {} ({}) non conservé : seuls les identifiants "
+                                + "et valeurs simples sont enregistrés", name, value.getClass().getName());
+                    }
+                    continue;
+                }
+                putString(buffer, name);
+                buffer.put(type);
+                switch (type) {
+                    case TYPE_LONG:
+                        buffer.putLong((Long) value);
+                        break;
+                    case TYPE_INT:
+                        buffer.putInt((Integer) value);
+                        break;
+                    case TYPE_BOOLEAN:
+                        buffer.put((byte) ((Boolean) value ? 1 : 0));
+                        break;
+                    case TYPE_DOUBLE:
+                        buffer.putDouble((Double) value);
+                        break;
+                    default:
+                        putString(buffer, (String) value);
+                }
+                count++;
+            }
+        } catch (java.nio.BufferOverflowException e) {
+            throw new IllegalStateException("Session trop volumineuse", e);
+        }
+        buffer.putShort(0, (short) count);
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static byte typeOf(Object value) {
+        if (value instanceof Long) {
+            return TYPE_LONG;
+        } else if (value instanceof Integer) {
+            return TYPE_INT;
+        } else if (value instanceof String) {
+            return TYPE_STRING;
+        } else if (value instanceof Boolean) {
+            return TYPE_BOOLEAN;
+        } else if (value instanceof Double) {
+            return TYPE_DOUBLE;
+        }
+        return 0;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Une table en adressage ouvert sur sa tranche du fichier.
+     */
+    private final class Segment {
+
+        private final ByteBuffer buffer;
+
+        private final long fileOffset;
+
+        private final long fileLength;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private FileLock fileLock;
+
+        Segment(ByteBuffer buffer, long fileOffset, long fileLength) {
+            this.buffer = buffer;
+            this.fileOffset = fileOffset;
+            this.fileLength = fileLength;
+        }
+
+        void lock() {
+            lock.lock();
+            if (shared) {
+                try {
+                    fileLock = channel.lock(fileOffset, fileLength, false);
+                } catch (IOException e) {
+                    lock.unlock();
+                    throw new UncheckedIOException("Verrou du fichier de sessions impossible", e);
+                }
+            }
+        }
+
+        void unlock() {
+            try {
+                if (fileLock != null) {
+                    fileLock.release();
+                    fileLock = null;
+                }
+            } catch (IOException e) {
+                logger.warn("Libération du verrou du fichier de sessions impossible", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Emplacement de la session, ou -1.
+         */
+        int find(byte[] id) {
+            int mask = slotsPerSegment - 1;
+            int start = (hash(id) >>> 8) & mask;
+            for (int i = 0; i < slotsPerSegment; i++) {
+                int slot = (start + i) & mask;
+                byte state = buffer.get(slot * slotSize);
+                if (state == FREE) {
+                    return -1;
+                }
+                if (state == USED && sameId(slot, id)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Écrit la session (remplace l'existante) ; false si le segment est plein.
+         */
+        boolean put(byte[] id, MapSession session, byte[] attributes) {
+            int slot = find(id);
+            if (slot < 0) {
+                slot = firstAvailable(id);
+                if (slot < 0) {
+                    return false;
+                }
+            }
+            int base = slot * slotSize;
+            // Marqué libre pendant l'écriture : un arrêt brutal ne laisse pas d'emplacement à moitié écrit
+            buffer.put(base, DELETED);
+            buffer.put(base + 1, (byte) id.length);
+            for (int i = 0; i < id.length; i++) {
+                buffer.put(base + ID_OFFSET + i, id[i]);
+            }
+            buffer.putLong(base + CREATED_OFFSET, session.getCreationTime().toEpochMilli());
+            buffer.putLong(base + ACCESSED_OFFSET, session.getLastAccessedTime().toEpochMilli());
+            buffer.putInt(base + MAX_INACTIVE_OFFSET, (int) session.getMaxInactiveInterval().getSeconds());
+            buffer.putInt(base + LENGTH_OFFSET, attributes.length);
+            for (int i = 0; i < attributes.length; i++) {
+                buffer.put(base + SLOT_HEADER + i, attributes[i]);
+            }
+            buffer.putInt(base + CRC_OFFSET, crc(base, attributes.length));
+            buffer.put(base, USED);
+            return true;
+        }
+
+        MapSession read(int slot, String sessionId) {
+            int base = slot * slotSize;
+            int length = buffer.getInt(base + LENGTH_OFFSET);
+            if (length < 0 || SLOT_HEADER + length > slotSize || buffer.getInt(base + CRC_OFFSET) != crc(base, length)) {
+                logger.warn("Emplacement de session corrompu, session {} ignorée", sessionId);
+                return null;
+            }
+            MapSession session = new MapSession(sessionId);
+            session.setCreationTime(Instant.ofEpochMilli(buffer.getLong(base + CREATED_OFFSET)));
+            session.setLastAccessedTime(Instant.ofEpochMilli(buffer.getLong(base + ACCESSED_OFFSET)));
+            session.setMaxInactiveInterval(Duration.ofSeconds(buffer.getInt(base + MAX_INACTIVE_OFFSET)));
+
+            ByteBuffer attributes = buffer.duplicate();
+            attributes.limit(base + SLOT_HEADER + length).position(base + SLOT_HEADER);
+            int count = attributes.getShort();
+            for (int i = 0; i < count; i++) {
+                String name = getString(attributes);
+                byte type = attributes.get();
+                switch (type) {
+                    case TYPE_LONG:
+                        session.setAttribute(name, attributes.getLong());
+                        break;
+                    case TYPE_INT:
+                        session.setAttribute(name, attributes.getInt());
+                        break;
+                    case TYPE_BOOLEAN:
+                        session.setAttribute(name, attributes.get() != 0);
+                        break;
+                    case TYPE_DOUBLE:
+                        session.setAttribute(name, attributes.getDouble());
+                        break;
+                    default:
+                        session.setAttribute(name, getString(attributes));
+                }
+            }
+            return session;
+        }
+
+        void delete(int slot) {
+            int mask = slotsPerSegment - 1;
+            // Emplacement suivant libre : aucune chaîne de sondage ne passe par ici
+            if (buffer.get(((slot + 1) & mask) * slotSize) != FREE) {
+                buffer.put(slot * slotSize, DELETED);
+                return;
+            }
+            buffer.put(slot * slotSize, FREE);
+            // Les suppressions qui précèdent ne servent plus à aucune chaîne
+            for (int previous = (slot - 1) & mask;
+                 previous != slot && buffer.get(previous * slotSize) == DELETED;
+                 previous = (previous - 1) & mask) {
+                buffer.put(previous * slotSize, FREE);
+            }
+        }
+
+        void sweep(Instant now) {
+            for (int slot = 0; slot < slotsPerSegment; slot++) {
+                int base = slot * slotSize;
+                if (buffer.get(base) != USED) {
+                    continue;
+                }
+                long lastAccessed = buffer.getLong(base + ACCESSED_OFFSET);
+                int maxInactive = buffer.getInt(base + MAX_INACTIVE_OFFSET);
+                if (maxInactive >= 0 && lastAccessed + maxInactive * 1000L < now.toEpochMilli()) {
+                    delete(slot);
+                }
+            }
+        }
+
+        private int firstAvailable(byte[] id) {
+            int mask = slotsPerSegment - 1;
+            int start = (hash(id) >>> 8) & mask;
+            for (int i = 0; i < slotsPerSegment; i++) {
+                int slot = (start + i) & mask;
+                if (buffer.get(slot * slotSize) != USED) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private boolean sameId(int slot, byte[] id) {
+            int base = slot * slotSize;
+            if (buffer.get(base + 1) != id.length) {
+                return false;
+            }
+            for (int i = 0; i < id.length; i++) {
+                if (buffer.get(base + ID_OFFSET + i) != id[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int crc(int base, int length) {
+            CRC32 crc = new CRC32();
+            ByteBuffer slot = buffer.duplicate();
+            slot.limit(base + CRC_OFFSET).position(base + 1);
+            crc.update(slot);
+            slot.limit(base + SLOT_HEADER + length).position(base + SLOT_HEADER);
+            crc.update(slot);
+            return (int) crc.getValue();
+        }
+    }
+}
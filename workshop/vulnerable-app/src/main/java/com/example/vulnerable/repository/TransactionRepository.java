@@ -3,15 +3,37 @@ package com.example.vulnerable.repository;
 import com.example.vulnerable.model.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionRepositoryCustom {
 
     List<Transaction> findByFromUserIdOrToUserId(Long fromUserId, Long toUserId);
 
     @Query("SELECT t FROM Transaction t WHERE t.fromUserId = ?1 OR t.toUserId = ?1 ORDER BY t.timestamp DESC")
     List<Transaction> findAllByUserId(Long userId);
+
+    /**
+     * Page d'historique par clé (timestamp, id), strictement avant le curseur.
+     * Chaque branche de l'UNION parcourt son index composite
+     * (from_user_id, timestamp) ou (to_user_id, timestamp).
+     */
+    @Query(value = "SELECT * FROM ("
+            + "(SELECT * FROM transactions WHERE from_user_id = :userId"
+            + " AND (timestamp < :beforeTimestamp OR (timestamp = :beforeTimestamp AND id < :beforeId))"
+            + " ORDER BY timestamp DESC, id DESC LIMIT :limit)"
+            + " UNION "
+            + "(SELECT * FROM transactions WHERE to_user_id = :userId"
+            + " AND (timestamp < :beforeTimestamp OR (timestamp = :beforeTimestamp AND id < :beforeId))"
+            + " ORDER BY timestamp DESC, id DESC LIMIT :limit)"
+            + ") ORDER BY timestamp DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Transaction> findPageByUserId(@Param("userId") Long userId,
+                                       @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                       @Param("beforeId") Long beforeId,
+                                       @Param("limit") int limit);
 }
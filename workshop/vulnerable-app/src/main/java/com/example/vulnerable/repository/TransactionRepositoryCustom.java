@@ -0,0 +1,17 @@
+package com.example.vulnerable.repository;
+
+import com.example.vulnerable.model.Transaction;
+
+import java.util.function.Consumer;
+
+/**
+ * Accès JDBC direct pour les historiques trop volumineux pour être chargés en liste.
+ */
+public interface TransactionRepositoryCustom {
+
+    /**
+     * Parcourt l'historique d'un utilisateur au fil du curseur JDBC,
+     * du plus récent au plus ancien, sans le matérialiser.
+     */
+    void streamAllByUserId(Long userId, Consumer<Transaction> consumer);
+}
@@ -0,0 +1,46 @@
+package com.example.vulnerable.repository;
+
+import com.example.vulnerable.model.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.function.Consumer;
+
+/**
+ * Implémentation JDBC de {@link TransactionRepositoryCustom}.
+ */
+public class TransactionRepositoryImpl implements TransactionRepositoryCustom {
+
+    private static final int FETCH_SIZE = 500;
+
+    private static final RowMapper<Transaction> ROW_MAPPER = (rs, rowNum) -> new Transaction(
+            rs.getLong("id"),
+            rs.getLong("from_user_id"),
+            rs.getLong("to_user_id"),
+            rs.getDouble("amount"),
+            rs.getString("description"),
+            rs.getTimestamp("timestamp").toLocalDateTime(),
+            rs.getString("status"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public TransactionRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    /**
+     * Le tri est fait par la base : la mémoire de l'application reste constante
+     * quelle que soit la taille de l'historique.
+     */
+    @Override
+    public void streamAllByUserId(Long userId, Consumer<Transaction> consumer) {
+        jdbcTemplate.query("SELECT * FROM transactions WHERE from_user_id = ? OR to_user_id = ? "
+                        + "ORDER BY timestamp DESC, id DESC",
+                (RowCallbackHandler) rs -> consumer.accept(ROW_MAPPER.mapRow(rs, rs.getRow())),
+                userId, userId);
+    }
+}
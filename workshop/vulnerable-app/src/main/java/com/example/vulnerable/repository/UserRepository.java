@@ -1,13 +1,32 @@
 package com.example.vulnerable.repository;
 
 import com.example.vulnerable.model.User;
+import com.example.vulnerable.model.UserSummary;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Repository pour la gestion des utilisateurs.
@@ -19,16 +38,30 @@ import java.util.Optional;
 @Repository
 public class UserRepository {
 
+    // Active le cache de requêtes Hibernate (région default-query-results-region)
+    private static final String CACHEABLE_HINT = "org.hibernate.cacheable";
+
+    private static final int FETCH_SIZE = 1000;
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private UserSearchIndex searchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     /**
      * VULNÉRABLE : Injection SQL via concaténation de chaînes
      * Exemple d'attaque : username = "' OR '1'='1"
      */
     public User findByUsernameUnsafe(String username) {
         String sql = "SELECT * FROM users WHERE username = '" + username + "'";
-        Query query = entityManager.createNativeQuery(sql, User.class);
+        Query query = entityManager.createNativeQuery(sql, User.class)
+                .setHint(CACHEABLE_HINT, true);
+        // Le résultat est invalidé à chaque modification de la table users
+        query.unwrap(NativeQuery.class).addSynchronizedEntityClass(User.class);
         List<User> results = query.getResultList();
         return results.isEmpty() ? null : results.get(0);
     }
@@ -63,7 +96,11 @@ public class UserRepository {
     public void updateBalanceUnsafe(Long userId, String amount) {
         String sql = "UPDATE users SET balance = balance + " + amount 
                    + " WHERE id = " + userId;
-        entityManager.createNativeQuery(sql).executeUpdate();
+        // Sans table déclarée, Hibernate viderait tout le cache de second niveau
+        entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(User.class)
+                .executeUpdate();
     }
 
     /**
@@ -73,32 +110,196 @@ public class UserRepository {
         String sql = "SELECT u FROM User u WHERE u.username = :username";
         return entityManager.createQuery(sql, User.class)
                 .setParameter("username", username)
+                .setHint(CACHEABLE_HINT, true)
                 .getResultList()
                 .stream()
                 .findFirst()
                 .orElse(null);
     }
 
+    /**
+     * Écriture paramétrée d'un écart de solde (utilisée par le ledger en écriture différée)
+     */
+    public int addToBalance(Long userId, Double delta) {
+        return entityManager.createQuery("UPDATE User u SET u.balance = u.balance + :delta WHERE u.id = :id")
+                .setParameter("delta", delta)
+                .setParameter("id", userId)
+                .executeUpdate();
+    }
+
+    /**
+     * Recherche servie par l'index de trigrammes (app.search.index.enabled) :
+     * seuls les utilisateurs retenus sont chargés, dans l'ordre du classement.
+     */
+    public List<User> searchUsersIndexed(String searchTerm, int limit) {
+        List<Long> ids = searchIndex.search(searchTerm, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, User> users = entityManager
+                .createQuery("SELECT u FROM User u WHERE u.id IN :ids", User.class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     public User save(User user) {
+        User saved;
         if (user.getId() == null) {
             entityManager.persist(user);
-            return user;
+            saved = user;
         } else {
-            return entityManager.merge(user);
+            saved = entityManager.merge(user);
+        }
+        searchIndex.index(saved.getId(), saved.getUsername(), saved.getEmail());
+        return saved;
+    }
+
+    /**
+     * Met à jour toutes les colonnes sauf le solde, tenu par le ledger quand
+     * il est activé : un merge réécrirait le solde lu avant les écarts encore
+     * en file. L'entité est détachée pour que sa modification ne soit pas
+     * aussi écrite au flush.
+     */
+    public User saveExceptBalance(User user) {
+        if (entityManager.contains(user)) {
+            entityManager.detach(user);
+        }
+        entityManager.createQuery("UPDATE User u SET u.username = :username, u.password = :password, "
+                        + "u.email = :email, u.role = :role, u.ssn = :ssn, u.creditCard = :creditCard, "
+                        + "u.active = :active WHERE u.id = :id")
+                .setParameter("username", user.getUsername())
+                .setParameter("password", user.getPassword())
+                .setParameter("email", user.getEmail())
+                .setParameter("role", user.getRole())
+                .setParameter("ssn", user.getSsn())
+                .setParameter("creditCard", user.getCreditCard())
+                .setParameter("active", user.isActive())
+                .setParameter("id", user.getId())
+                .executeUpdate();
+        searchIndex.index(user.getId(), user.getUsername(), user.getEmail());
+        return user;
+    }
+
+    /**
+     * Solde de l'entité tel que chargé dans le contexte de persistance, avant
+     * toute modification ; null si l'entité n'y est pas (détachée).
+     */
+    public Double findLoadedBalance(User user) {
+        if (!entityManager.contains(user)) {
+            return null;
         }
+        EntityEntry entry = entityManager.unwrap(SessionImplementor.class)
+                .getPersistenceContext()
+                .getEntry(user);
+        return entry == null ? null : (Double) entry.getLoadedValue("balance");
     }
 
     public Optional<User> findById(Long id) {
         return Optional.ofNullable(entityManager.find(User.class, id));
     }
 
-    @SuppressWarnings("unchecked")
-    public List<User> findAll() {
-        return entityManager.createNativeQuery("SELECT * FROM users", User.class)
+    /**
+     * Page d'entités après l'identifiant donné, parcourue sur la clé primaire.
+     */
+    public List<User> findPage(long afterId, int limit) {
+        return entityManager.createQuery("SELECT u FROM User u WHERE u.id > :afterId ORDER BY u.id", User.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
                 .getResultList();
     }
 
+    /**
+     * Page de projections (id, username, role) après l'identifiant donné,
+     * parcourue sur la clé primaire.
+     */
+    public List<UserSummary> findSummaries(long afterId, int limit) {
+        return entityManager.createQuery("SELECT new com.example.vulnerable.model.UserSummary(u.id, u.username, u.role) "
+                        + "FROM User u WHERE u.id > :afterId ORDER BY u.id", UserSummary.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Projections dont le username commence par le préfixe (index unique sur username).
+     */
+    public List<UserSummary> findSummariesByUsernamePrefix(String prefix, int limit) {
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return entityManager.createQuery("SELECT new com.example.vulnerable.model.UserSummary(u.id, u.username, u.role) "
+                        + "FROM User u WHERE u.username LIKE :pattern ESCAPE '\\' ORDER BY u.username", UserSummary.class)
+                .setParameter("pattern", pattern)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Parcourt tous les utilisateurs par curseur JDBC, sans contexte de persistance.
+     */
+    public void streamAll(Consumer<User> consumer) {
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursor.setFetchSize(FETCH_SIZE);
+        cursor.query("SELECT * FROM users ORDER BY id", (RowCallbackHandler) rs -> consumer.accept(new User(
+                rs.getLong("id"),
+                rs.getString("username"),
+                rs.getString("password"),
+                rs.getString("email"),
+                rs.getString("role"),
+                rs.getString("ssn"),
+                rs.getString("credit_card"),
+                rs.getObject("balance", Double.class),
+                rs.getBoolean("active"))));
+    }
+
+    /**
+     * Usernames déjà présents parmi ceux donnés.
+     */
+    public Set<String> findExistingUsernames(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(entityManager
+                .createQuery("SELECT u.username FROM User u WHERE u.username IN :usernames", String.class)
+                .setParameter("usernames", usernames)
+                .getResultList());
+    }
+
     public void delete(User user) {
         entityManager.remove(entityManager.contains(user) ? user : entityManager.merge(user));
+        searchIndex.remove(user.getId());
+    }
+
+    /**
+     * Vide le cache de requêtes après des insertions faites hors Hibernate (JDBC direct).
+     */
+    public void evictQueryCache() {
+        entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getCache()
+                .evictQueryRegions();
+    }
+
+    /**
+     * Compteurs du cache de second niveau (entités User et cache de requêtes).
+     */
+    public Map<String, Object> getCacheStatistics() {
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        CacheRegionStatistics users = statistics.getDomainDataRegionStatistics(User.class.getName());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("userHits", users.getHitCount());
+        stats.put("userMisses", users.getMissCount());
+        stats.put("userPuts", users.getPutCount());
+        stats.put("queryHits", statistics.getQueryCacheHitCount());
+        stats.put("queryMisses", statistics.getQueryCacheMissCount());
+        stats.put("queryPuts", statistics.getQueryCachePutCount());
+        return stats;
     }
 }
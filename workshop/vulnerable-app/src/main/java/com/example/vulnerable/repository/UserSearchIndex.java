@@ -0,0 +1,378 @@
+package com.example.vulnerable.repository;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index inversé de trigrammes sur username et email.
+ *
+ * Une recherche intersecte les listes d'identifiants des trigrammes du
+ * terme (de la plus courte à la plus longue), vérifie la sous-chaîne sur
+ * les candidats puis classe les résultats : username exact, préfixe du
+ * username, username contenant le terme, puis email.
+ *
+ * Un terme de moins de 3 caractères n'a pas de trigramme : il est servi
+ * par un index trié des usernames, sans parcours des entrées. Seuls les
+ * usernames commençant par le terme sont rendus (l'exact d'abord, puis par
+ * ordre alphabétique), au plus limit.
+ *
+ * Désactivé par défaut (app.search.index.enabled) pour conserver
+ * l'injection SQL de la recherche utilisée dans le workshop.
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger logger = LogManager.getLogger(UserSearchIndex.class);
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<Long, Postings> postings = new ConcurrentHashMap<>();
+
+    // Clé : username en minuscules, '\0', id (usernames égaux à la casse près)
+    private final ConcurrentSkipListMap<String, Long> usernames = new ConcurrentSkipListMap<>();
+
+    @Value("${app.search.index.enabled:false}")
+    private boolean enabled;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Construction initiale, après l'exécution de data.sql.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursor.setFetchSize(FETCH_SIZE);
+        cursor.query("SELECT id, username, email FROM users ORDER BY id",
+                (RowCallbackHandler) rs -> put(rs.getLong("id"), rs.getString("username"), rs.getString("email")));
+        logger.info("Index de recherche construit : {} utilisateurs en {} ms",
+                entries.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Indexe (ou réindexe) un utilisateur une fois la transaction courante validée.
+     */
+    public void index(Long id, String username, String email) {
+        if (enabled && id != null) {
+            afterCommit(() -> put(id, username, email));
+        }
+    }
+
+    /**
+     * Retire un utilisateur une fois la transaction courante validée.
+     */
+    public void remove(Long id) {
+        if (enabled && id != null) {
+            afterCommit(() -> delete(id));
+        }
+    }
+
+    /**
+     * Identifiants des meilleurs résultats, du plus pertinent au moins pertinent.
+     */
+    public List<Long> search(String term, int limit) {
+        if (term == null || term.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String needle = term.toLowerCase(Locale.ROOT);
+        if (needle.length() < 3) {
+            return searchPrefix(needle, limit);
+        }
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(Comparator.reverseOrder());
+        for (long id : candidates(needle)) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                offer(best, id, entry, needle, limit);
+            }
+        }
+
+        Hit[] hits = best.toArray(new Hit[0]);
+        Arrays.sort(hits);
+        List<Long> ids = new ArrayList<>(hits.length);
+        for (Hit hit : hits) {
+            ids.add(hit.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Usernames commençant par le terme : '\0' précède tout caractère, le
+     * username exact vient donc en premier.
+     */
+    private List<Long> searchPrefix(String needle, int limit) {
+        List<Long> ids = new ArrayList<>(Math.min(limit, 64));
+        for (Long id : usernames.subMap(needle, needle + Character.MAX_VALUE).values()) {
+            ids.add(id);
+            if (ids.size() == limit) {
+                break;
+            }
+        }
+        return ids;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // ========================================
+    // INDEX
+    // ========================================
+
+    private void put(long id, String username, String email) {
+        Entry entry = new Entry(lower(username), lower(email));
+        Entry previous = entries.put(id, entry);
+        if (previous != null && !previous.username.equals(entry.username)) {
+            usernames.remove(usernameKey(previous.username, id));
+        }
+        usernames.put(usernameKey(entry.username, id), id);
+        Set<Long> before = previous == null ? Set.of() : previous.allTrigrams();
+        Set<Long> after = entry.allTrigrams();
+        for (long trigram : before) {
+            if (!after.contains(trigram)) {
+                Postings list = postings.get(trigram);
+                if (list != null) {
+                    list.remove(id);
+                }
+            }
+        }
+        for (long trigram : after) {
+            if (!before.contains(trigram)) {
+                postings.computeIfAbsent(trigram, t -> new Postings()).add(id);
+            }
+        }
+    }
+
+    private void delete(long id) {
+        Entry previous = entries.remove(id);
+        if (previous != null) {
+            usernames.remove(usernameKey(previous.username, id));
+            for (long trigram : previous.allTrigrams()) {
+                Postings list = postings.get(trigram);
+                if (list != null) {
+                    list.remove(id);
+                }
+            }
+        }
+    }
+
+    private long[] candidates(String needle) {
+        List<Postings> lists = new ArrayList<>();
+        for (long trigram : trigrams(needle)) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                return new long[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(Postings::size));
+
+        // Seule la liste la plus courte est copiée ; les autres filtrent par recherche binaire
+        long[] result = lists.get(0).snapshot();
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = lists.get(i).retain(result);
+        }
+        return result;
+    }
+
+    private static void offer(PriorityQueue<Hit> best, long id, Entry entry, String needle, int limit) {
+        int rank = entry.rank(needle);
+        if (rank < 0) {
+            return;
+        }
+        Hit hit = new Hit(id, rank, entry.username.length());
+        if (best.size() < limit) {
+            best.add(hit);
+        } else if (hit.compareTo(best.peek()) < 0) {
+            best.poll();
+            best.add(hit);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static String lower(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static String usernameKey(String username, long id) {
+        return username + '\0' + id;
+    }
+
+    private static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Texte indexé d'un utilisateur, en minuscules.
+     */
+    private static final class Entry {
+
+        final String username;
+
+        final String email;
+
+        Entry(String username, String email) {
+            this.username = username;
+            this.email = email;
+        }
+
+        Set<Long> allTrigrams() {
+            Set<Long> trigrams = trigrams(username);
+            trigrams.addAll(trigrams(email));
+            return trigrams;
+        }
+
+        /**
+         * 0 = username exact, 1 = préfixe, 2 = username contient, 3 = email ; -1 sinon.
+         */
+        int rank(String needle) {
+            if (username.equals(needle)) {
+                return 0;
+            }
+            if (username.startsWith(needle)) {
+                return 1;
+            }
+            if (username.contains(needle)) {
+                return 2;
+            }
+            return email.contains(needle) ? 3 : -1;
+        }
+    }
+
+    private static final class Hit implements Comparable<Hit> {
+
+        final long id;
+
+        final int rank;
+
+        final int length;
+
+        Hit(long id, int rank, int length) {
+            this.id = id;
+            this.rank = rank;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            if (rank != other.rank) {
+                return Integer.compare(rank, other.rank);
+            }
+            if (length != other.length) {
+                return Integer.compare(length, other.length);
+            }
+            return Long.compare(id, other.id);
+        }
+    }
+
+    /**
+     * Liste triée d'identifiants. Les nouveaux utilisateurs ont des
+     * identifiants croissants : l'ajout se fait presque toujours en fin.
+     */
+    private static final class Postings {
+
+        private long[] ids = new long[4];
+
+        private int size;
+
+        synchronized void add(long id) {
+            int pos = size == 0 || ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            int insert = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, insert, ids, insert + 1, size - insert);
+            ids[insert] = id;
+            size++;
+        }
+
+        synchronized void remove(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        /**
+         * Candidats (triés) également présents dans cette liste.
+         */
+        synchronized long[] retain(long[] candidates) {
+            long[] out = new long[candidates.length];
+            int n = 0;
+            int from = 0;
+            for (long id : candidates) {
+                int pos = Arrays.binarySearch(ids, from, size, id);
+                if (pos >= 0) {
+                    out[n++] = id;
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+                if (from >= size) {
+                    break;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+    }
+}
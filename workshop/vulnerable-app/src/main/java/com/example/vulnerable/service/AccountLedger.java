@@ -0,0 +1,567 @@
+package com.example.vulnerable.service;
+
+import com.example.vulnerable.model.Checkpoint;
+import com.example.vulnerable.model.Transaction;
+import com.example.vulnerable.model.User;
+import com.example.vulnerable.repository.CheckpointRepository;
+import com.example.vulnerable.repository.TransactionRepository;
+import com.example.vulnerable.repository.UserRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * Ledger des comptes en mémoire, placé devant la base de données.
+ *
+ * Chaque solde est un compteur {@code long} en centimes modifié par CAS :
+ * le débit du compte source n'est appliqué que si le solde lu est suffisant,
+ * ce qui exclut tout découvert sans verrou ni session JPA. Les opérations
+ * sont ensuite persistées par lots par un thread d'écriture différée, sous
+ * forme d'écarts de solde : la base reflète exactement les lots validés.
+ *
+ * Avec app.ledger.journal.enabled, chaque opération est d'abord écrite dans
+ * le {@link TransactionJournal} ; celles qui n'ont pas atteint la base avant
+ * un arrêt brutal sont rejouées au démarrage suivant. Un lot refusé par la
+ * base est retenté (attente croissante) avant tout autre : le point de
+ * reprise n'avance jamais au-delà d'une opération non persistée.
+ *
+ * Chaque compte compte ses opérations en file. Un compte modifié hors du
+ * ledger (evict) n'est rechargé depuis la base qu'une fois ce compteur à
+ * zéro : le solde relu contient alors tous ses écarts.
+ *
+ * Désactivé par défaut (app.ledger.enabled) pour conserver la race condition
+ * du parcours JPA utilisée dans le workshop.
+ */
+@Component
+public class AccountLedger implements SmartInitializingSingleton {
+
+    private static final Logger logger = LogManager.getLogger(AccountLedger.class);
+
+    private static final String CHECKPOINT = "ledger-journal";
+
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private final ConcurrentHashMap<Long, Account> accounts = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<LedgerEntry> pending = new LinkedBlockingQueue<>();
+
+    // Attribution des séquences, écriture au journal et mise en file dans le même ordre.
+    // Pas de synchronized : l'écriture au journal (fsync) épinglerait un thread virtuel.
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private long lastSequence;
+
+    // Dernière séquence validée en base
+    private volatile long persistedSequence;
+
+    // Lot refusé par la base, retenté avant tout autre (thread d'écriture, puis stop)
+    private List<LedgerEntry> failedBatch;
+
+    @Value("${app.ledger.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.ledger.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CheckpointRepository checkpointRepository;
+
+    @Autowired
+    private TransactionJournal journal;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    /**
+     * Rejeu du journal puis démarrage de l'écriture différée, une fois data.sql
+     * exécuté et avant l'ouverture du serveur web.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        if (journal.isEnabled()) {
+            recover();
+        }
+        running = true;
+        writer = new Thread(this::writeBehindLoop, "ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("Ledger en mémoire activé (lots de {} opérations, journal {})",
+                flushBatchSize, journal.isEnabled() ? "activé" : "désactivé");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        // Vider ce qui reste après l'arrêt du thread
+        try {
+            if (failedBatch == null || retry()) {
+                flush(null);
+            }
+        } catch (RuntimeException e) {
+            // Le journal garde les opérations non persistées pour le prochain démarrage
+            logger.error("Opérations du ledger non persistées à l'arrêt", e);
+        }
+        journal.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Attend que toutes les opérations acceptées soient validées en base.
+     */
+    public boolean awaitPersisted(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long target;
+        appendLock.lock();
+        try {
+            target = lastSequence;
+        } finally {
+            appendLock.unlock();
+        }
+        while (persistedSequence < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Applique un transfert dans le ledger puis le met en file pour persistance.
+     * La validation du montant reste celle de TransferService. Le débit est
+     * fait avant la journalisation, le crédit après : un échec du journal ne
+     * rend que le débit, et un solde crédité n'est jamais repris.
+     */
+    public Transaction transfer(Long fromUserId, Long toUserId, Double amount, String description) {
+        if (account(fromUserId) == null) {
+            throw new RuntimeException("Compte source non trouvé");
+        }
+        if (account(toUserId) == null) {
+            throw new RuntimeException("Compte destination non trouvé");
+        }
+
+        if (amount == null || amount == 0) {
+            throw new RuntimeException("Montant invalide");
+        }
+        long cents = toCents(amount);
+
+        Account source = acquire(fromUserId, "Compte source non trouvé");
+        Account target;
+        try {
+            target = acquire(toUserId, "Compte destination non trouvé");
+        } catch (RuntimeException e) {
+            source.release();
+            throw e;
+        }
+
+        long current;
+        do {
+            current = source.balance.get();
+            if (current < cents) {
+                source.release();
+                target.release();
+                throw new RuntimeException("Solde insuffisant");
+            }
+        } while (!source.balance.compareAndSet(current, current - cents));
+
+        Transaction transaction = new Transaction();
+        transaction.setFromUserId(fromUserId);
+        transaction.setToUserId(toUserId);
+        transaction.setAmount(amount);
+        transaction.setDescription(description);
+        transaction.setTimestamp(LocalDateTime.now());
+        transaction.setStatus("COMPLETED");
+
+        try {
+            append(sequence -> LedgerEntry.transfer(sequence, transaction, cents));
+        } catch (RuntimeException e) {
+            // Non journalisé : le transfert n'a pas eu lieu ; seul le débit est à rendre
+            source.balance.addAndGet(cents);
+            source.release();
+            target.release();
+            throw e;
+        }
+        // Crédit après journalisation : jamais à reprendre
+        target.balance.addAndGet(cents);
+        return transaction;
+    }
+
+    /**
+     * Solde courant du ledger, chargé depuis la base au premier accès.
+     */
+    public Double getBalance(Long userId) {
+        Account account = account(userId);
+        return account == null ? null : fromCents(account.balance.get());
+    }
+
+    /**
+     * Solde courant si le compte est chargé, null sinon (sans accès à la
+     * base). Un compte non chargé n'a plus d'opération en file : son solde en
+     * base est à jour.
+     */
+    public Double getLoadedBalance(Long userId) {
+        Account account = accounts.get(userId);
+        return account == null ? null : fromCents(account.balance.get());
+    }
+
+    /**
+     * Remplace le solde d'un compte (opérations d'administration). L'écart
+     * avec le solde courant est journalisé et persisté comme un ajustement.
+     * Une baisse est appliquée avant la journalisation (rien n'est dépensé
+     * entre-temps), une hausse après (rien à reprendre en cas d'échec).
+     */
+    public void setBalance(Long userId, Double newBalance) {
+        Account account = acquire(userId, "Utilisateur non trouvé");
+        long cents = toCents(newBalance);
+        long previous;
+        long delta;
+        do {
+            previous = account.balance.get();
+            delta = cents - previous;
+        } while (delta < 0 && !account.balance.compareAndSet(previous, cents));
+
+        long adjustment = delta;
+        try {
+            append(sequence -> LedgerEntry.adjustment(sequence, userId, adjustment));
+        } catch (RuntimeException e) {
+            if (adjustment < 0) {
+                account.balance.addAndGet(-adjustment);
+            }
+            account.release();
+            throw e;
+        }
+        if (adjustment > 0) {
+            account.balance.addAndGet(adjustment);
+        }
+    }
+
+    /**
+     * Signale un compte modifié hors du ledger. Il est relu depuis la base au
+     * prochain accès, mais seulement une fois ses opérations en file
+     * persistées ; d'ici là le solde en mémoire reste la référence. Dans une
+     * transaction, le signalement attend la validation : relu plus tôt, le
+     * compte garderait l'ancien solde.
+     */
+    public void evict(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markStale(userId);
+                }
+            });
+        } else {
+            markStale(userId);
+        }
+    }
+
+    private void markStale(Long userId) {
+        Account account = accounts.get(userId);
+        if (account != null) {
+            account.stale = true;
+        }
+    }
+
+    /**
+     * Compte chargé, rechargé si nécessaire, ou null s'il n'existe pas.
+     */
+    private Account account(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        while (true) {
+            Account account = accounts.get(userId);
+            if (account != null) {
+                if (!account.stale || !account.retire()) {
+                    return account;
+                }
+                accounts.remove(userId, account);
+            }
+            Account loaded = userRepository.findById(userId)
+                    .map(User::getBalance)
+                    .map(balance -> new Account(toCents(balance)))
+                    .orElse(null);
+            if (loaded == null) {
+                return null;
+            }
+            Account existing = accounts.putIfAbsent(userId, loaded);
+            if (existing == null) {
+                return loaded;
+            }
+        }
+    }
+
+    /**
+     * Compte réservé pour une opération : il ne sera pas rechargé avant
+     * qu'elle soit persistée (ou abandonnée, release).
+     */
+    private Account acquire(Long userId, String notFound) {
+        while (true) {
+            Account account = account(userId);
+            if (account == null) {
+                throw new RuntimeException(notFound);
+            }
+            if (account.acquire()) {
+                return account;
+            }
+        }
+    }
+
+    private void append(LongFunction<LedgerEntry> factory) {
+        appendLock.lock();
+        try {
+            LedgerEntry entry = factory.apply(lastSequence + 1);
+            if (journal.isEnabled()) {
+                journal.append(entry);
+            }
+            lastSequence = entry.sequence;
+            pending.add(entry);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // ========================================
+    // PERSISTANCE
+    // ========================================
+
+    /**
+     * Rejoue les entrées du journal postérieures au point de reprise en base.
+     */
+    private void recover() {
+        long checkpoint = checkpointRepository.findById(CHECKPOINT)
+                .map(Checkpoint::getLastSequence)
+                .orElse(0L);
+        List<LedgerEntry> batch = new ArrayList<>(flushBatchSize);
+        lastSequence = journal.recover(checkpoint, entry -> {
+            batch.add(entry);
+            if (batch.size() == flushBatchSize) {
+                persist(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            persist(batch);
+        }
+    }
+
+    private void writeBehindLoop() {
+        long retryDelay = 100;
+        while (running) {
+            try {
+                if (failedBatch != null) {
+                    TimeUnit.MILLISECONDS.sleep(retryDelay);
+                    if (!retry()) {
+                        retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+                        continue;
+                    }
+                    retryDelay = 100;
+                }
+                flush(pending.poll(100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Erreur d'écriture différée du ledger, lot retenu pour une nouvelle tentative", e);
+            }
+        }
+    }
+
+    /**
+     * Nouvelle tentative du lot refusé ; true s'il est maintenant en base.
+     */
+    private boolean retry() {
+        try {
+            persist(failedBatch);
+            failedBatch = null;
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Lot du ledger toujours refusé par la base : {}", e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Persiste les opérations en attente, par lots. Un lot refusé est conservé
+     * dans failedBatch et rien d'autre n'est retiré de la file.
+     */
+    private void flush(LedgerEntry first) {
+        List<LedgerEntry> batch = new ArrayList<>(flushBatchSize);
+        if (first != null) {
+            batch.add(first);
+        }
+        while (true) {
+            pending.drainTo(batch, flushBatchSize - batch.size());
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                persist(batch);
+            } catch (RuntimeException e) {
+                failedBatch = new ArrayList<>(batch);
+                throw e;
+            }
+            if (batch.size() < flushBatchSize) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Un lot = ses transactions, un UPDATE par compte touché et le point de
+     * reprise du journal, dans une seule transaction.
+     */
+    private void persist(List<LedgerEntry> batch) {
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        Map<Long, Long> deltas = new HashMap<>();
+        for (LedgerEntry entry : batch) {
+            if (entry.type == LedgerEntry.TRANSFER) {
+                transactions.add(entry.transaction);
+                deltas.merge(entry.transaction.getFromUserId(), -entry.cents, Long::sum);
+                deltas.merge(entry.transaction.getToUserId(), entry.cents, Long::sum);
+            } else {
+                deltas.merge(entry.accountId, entry.cents, Long::sum);
+            }
+        }
+        long sequence = batch.get(batch.size() - 1).sequence;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Nouvelle tentative d'un lot dont la validation a en fait abouti : ne pas l'appliquer deux fois
+            if (journal.isEnabled() && checkpointRepository.findById(CHECKPOINT)
+                    .map(Checkpoint::getLastSequence).orElse(0L) >= sequence) {
+                return;
+            }
+            transactionRepository.saveAll(transactions);
+            deltas.forEach((userId, cents) -> {
+                if (cents != 0) {
+                    userRepository.addToBalance(userId, fromCents(cents));
+                }
+            });
+            if (journal.isEnabled()) {
+                checkpointRepository.save(new Checkpoint(CHECKPOINT, sequence));
+            }
+        });
+        persistedSequence = sequence;
+
+        for (LedgerEntry entry : batch) {
+            if (entry.type == LedgerEntry.TRANSFER) {
+                release(entry.transaction.getFromUserId());
+                release(entry.transaction.getToUserId());
+            } else {
+                release(entry.accountId);
+            }
+        }
+        if (journal.isEnabled()) {
+            try {
+                journal.release(sequence);
+            } catch (RuntimeException e) {
+                // Segments supprimés au prochain lot ; le point de reprise est déjà en base
+                logger.warn("Libération du journal impossible : {}", e.toString());
+            }
+        }
+    }
+
+    private void release(Long userId) {
+        // Absent pendant le rejeu du journal au démarrage : aucun compte chargé
+        Account account = accounts.get(userId);
+        if (account != null) {
+            account.release();
+        }
+    }
+
+    private static long toCents(Double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static Double fromCents(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Solde d'un compte et nombre de ses opérations non persistées.
+     */
+    private static final class Account {
+
+        // Compte remplacé par un rechargement : plus de nouvelle opération
+        private static final int RETIRED = -1;
+
+        private final AtomicLong balance;
+
+        private final AtomicInteger pendingOperations = new AtomicInteger();
+
+        private volatile boolean stale;
+
+        Account(long cents) {
+            this.balance = new AtomicLong(cents);
+        }
+
+        boolean acquire() {
+            int count;
+            do {
+                count = pendingOperations.get();
+                if (count == RETIRED) {
+                    return false;
+                }
+            } while (!pendingOperations.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            pendingOperations.decrementAndGet();
+        }
+
+        /**
+         * Retire le compte s'il n'a plus d'opération en file.
+         */
+        boolean retire() {
+            return pendingOperations.compareAndSet(0, RETIRED);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.vulnerable.service;
+
+import com.example.vulnerable.model.AuthToken;
+import com.example.vulnerable.model.RevokedToken;
+import com.example.vulnerable.model.User;
+import com.example.vulnerable.repository.RevokedTokenRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jetons d'authentification signés du mode sans session (app.auth.stateless.enabled).
+ *
+ * Un jeton porte l'id, le rôle, l'expiration et un identifiant aléatoire,
+ * en binaire : base64url(charge) "." base64url(HMAC-SHA256 tronqué à 128 bits),
+ * une soixantaine de caractères. Le serveur ne garde aucun état par
+ * utilisateur : n'importe quelle instance partageant app.auth.token.secret
+ * vérifie le jeton.
+ *
+ * La clé est préparée une fois par thread (Mac déjà initialisé) : une
+ * vérification coûte un HMAC sur une quarantaine d'octets.
+ *
+ * Révocation (déconnexion) : l'identifiant du jeton entre dans un filtre de
+ * Bloom. Un jeton vit au plus ttl : deux générations de filtre, renouvelées
+ * à chaque période ttl, suffisent à se souvenir de toutes les révocations
+ * utiles. Un faux positif oblige seulement à se reconnecter.
+ *
+ * Les révocations sont aussi écrites dans la table revoked_tokens, que
+ * chaque instance relit toutes les app.auth.token.revocation.poll-seconds
+ * (et entièrement au démarrage) : une déconnexion vaut sur les autres
+ * instances après au plus cette période, et survit au redémarrage. Les
+ * lignes expirées sont supprimées au fil des relectures.
+ */
+@Service
+public class AuthTokenService {
+
+    private static final Logger logger = LogManager.getLogger(AuthTokenService.class);
+
+    private static final String HMAC = "HmacSHA256";
+
+    private static final byte VERSION = 1;
+
+    // version, userId, expiresAt, tokenId ; le rôle suit en UTF-8
+    private static final int HEADER_BYTES = 1 + 8 + 8 + 8;
+
+    private static final int SIGNATURE_BYTES = 16;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${app.auth.stateless.enabled:false}")
+    private boolean enabled;
+
+    // Vide : clé aléatoire, les jetons ne survivent pas au redémarrage
+    @Value("${app.auth.token.secret:}")
+    private String secret;
+
+    @Value("${app.auth.token.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${app.auth.token.revocation.expected-insertions:100000}")
+    private long expectedRevocations;
+
+    @Value("${app.auth.token.revocation.poll-seconds:5}")
+    private long pollSeconds;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokens;
+
+    private ScheduledExecutorService poller;
+
+    // Curseurs des deux dernières relectures : chaque relecture reprend après
+    // l'avant-dernière, pour voir une ligne validée après un id plus élevé
+    private long previousMark;
+
+    private long currentMark;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    private volatile Revocations revocations;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        byte[] keyBytes;
+        if (secret.isEmpty()) {
+            keyBytes = new byte[32];
+            random.nextBytes(keyBytes);
+            logger.warn("app.auth.token.secret absent : clé aléatoire, jetons invalides après redémarrage "
+                    + "et non partagés entre instances");
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        key = new SecretKeySpec(keyBytes, HMAC);
+        revocations = new Revocations(null, System.currentTimeMillis());
+        poller = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "token-revocation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollRevocations, 0, pollSeconds, TimeUnit.SECONDS);
+        logger.info("Authentification sans session activée (jetons de {} min)", ttlMinutes);
+    }
+
+    @PreDestroy
+    void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getTtlSeconds() {
+        return ttlMinutes * 60;
+    }
+
+    public String issue(User user) {
+        byte[] role = user.getRole() == null ? new byte[0] : user.getRole().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = ByteBuffer.allocate(HEADER_BYTES + role.length)
+                .put(VERSION)
+                .putLong(user.getId())
+                .putLong(System.currentTimeMillis() / 1000 + getTtlSeconds())
+                .putLong(random.nextLong())
+                .put(role)
+                .array();
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * Contenu du jeton, ou null s'il est mal formé, mal signé, expiré ou révoqué.
+     */
+    public AuthToken verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length < HEADER_BYTES || payload[0] != VERSION
+                || !MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+        long userId = buffer.getLong();
+        long expiresAt = buffer.getLong();
+        long tokenId = buffer.getLong();
+        if (expiresAt <= System.currentTimeMillis() / 1000 || isRevoked(tokenId)) {
+            return null;
+        }
+        String role = new String(payload, HEADER_BYTES, payload.length - HEADER_BYTES, StandardCharsets.UTF_8);
+        return new AuthToken(userId, role, tokenId, expiresAt);
+    }
+
+    public void revoke(AuthToken token) {
+        revocations().current.add(Long.toString(token.getTokenId()));
+        try {
+            revokedTokens.save(new RevokedToken(null, token.getTokenId(), token.getExpiresAt()));
+        } catch (RuntimeException e) {
+            logger.warn("Révocation du jeton non partagée : valable sur cette instance seulement", e);
+        }
+    }
+
+    /**
+     * Ajoute aux filtres les révocations écrites par toutes les instances
+     * depuis l'avant-dernière relecture, puis purge les lignes expirées.
+     */
+    private void pollRevocations() {
+        try {
+            long highest = currentMark;
+            for (RevokedToken revoked : revokedTokens.findByIdGreaterThanOrderById(previousMark)) {
+                revocations().current.add(Long.toString(revoked.getTokenId()));
+                highest = Math.max(highest, revoked.getId());
+            }
+            previousMark = currentMark;
+            currentMark = highest;
+            revokedTokens.deleteExpired(System.currentTimeMillis() / 1000);
+        } catch (RuntimeException e) {
+            // Une exception arrêterait la tâche planifiée
+            logger.warn("Relecture des révocations de jetons impossible", e);
+        }
+    }
+
+    private boolean isRevoked(long tokenId) {
+        Revocations current = revocations();
+        String id = Long.toString(tokenId);
+        return current.current.mightContain(id)
+                || (current.previous != null && current.previous.mightContain(id));
+    }
+
+    private Revocations revocations() {
+        Revocations current = revocations;
+        long now = System.currentTimeMillis();
+        if (now - current.startedAt < getTtlSeconds() * 1000) {
+            return current;
+        }
+        synchronized (this) {
+            if (revocations == current) {
+                revocations = new Revocations(current.current, now);
+            }
+            return revocations;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        return Arrays.copyOf(macs.get().doFinal(payload), SIGNATURE_BYTES);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 indisponible", e);
+        }
+    }
+
+    /**
+     * Révocations de la période en cours et de la précédente.
+     */
+    private final class Revocations {
+
+        private final BloomFilter current = new BloomFilter(expectedRevocations, 0.001);
+
+        private final BloomFilter previous;
+
+        private final long startedAt;
+
+        Revocations(BloomFilter previous, long startedAt) {
+            this.previous = previous;
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.vulnerable.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compteurs servis par /api/health sans accès à la base.
+ *
+ * Chargés une fois au démarrage, puis tenus à jour par les services
+ * (inscription, suppression, transfert) après la validation de chaque
+ * transaction : un rollback ne modifie pas les compteurs.
+ */
+@Component
+public class BankStatistics {
+
+    private static final Logger logger = LogManager.getLogger(BankStatistics.class);
+
+    private final AtomicLong userCount = new AtomicLong();
+
+    private final AtomicLong transactionCount = new AtomicLong();
+
+    // Epoch millis de la dernière écriture validée, 0 si aucune depuis le démarrage
+    private final AtomicLong lastCommit = new AtomicLong();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Comptage initial, après l'exécution de data.sql (et le rejeu du journal du ledger).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        userCount.addAndGet(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class));
+        transactionCount.addAndGet(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Long.class));
+        logger.info("Statistiques chargées : {} utilisateurs, {} transactions",
+                userCount.get(), transactionCount.get());
+    }
+
+    public void userAdded() {
+        afterCommit(() -> userCount.incrementAndGet());
+    }
+
+    public void usersAdded(int count) {
+        afterCommit(() -> userCount.addAndGet(count));
+    }
+
+    public void userRemoved() {
+        afterCommit(() -> userCount.decrementAndGet());
+    }
+
+    public void transactionsAdded(int count) {
+        afterCommit(() -> transactionCount.addAndGet(count));
+    }
+
+    public long getUserCount() {
+        return userCount.get();
+    }
+
+    public long getTransactionCount() {
+        return transactionCount.get();
+    }
+
+    public Instant getLastCommit() {
+        long millis = lastCommit.get();
+        return millis == 0 ? null : Instant.ofEpochMilli(millis);
+    }
+
+    private void afterCommit(Runnable update) {
+        Runnable action = () -> {
+            update.run();
+            lastCommit.accumulateAndGet(System.currentTimeMillis(), Math::max);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
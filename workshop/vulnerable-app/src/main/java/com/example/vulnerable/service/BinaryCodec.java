@@ -0,0 +1,365 @@
+package com.example.vulnerable.service;
+
+import com.example.vulnerable.model.Transaction;
+import com.example.vulnerable.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Codec binaire versionné pour User et Transaction, sans réflexion.
+ *
+ * Un flux commence par un en-tête : "VBK", la version du schéma et le type
+ * d'enregistrement. Chaque enregistrement est préfixé par sa longueur
+ * (varint) puis commence par un masque des champs non nuls. Les entiers
+ * sont des varints zigzag, les décimaux 8 octets, les chaînes UTF-8
+ * préfixées par leur longueur.
+ *
+ * Compatibilité : une version ultérieure ne peut qu'ajouter des champs en
+ * fin d'enregistrement ; le décodeur ignore les octets qu'il ne connaît pas.
+ */
+public final class BinaryCodec {
+
+    public static final int VERSION = 1;
+
+    public static final byte USER = 1;
+
+    public static final byte TRANSACTION = 2;
+
+    private static final byte[] MAGIC = {'V', 'B', 'K'};
+
+    // Borne les allocations sur une entrée malformée ou hostile
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private BinaryCodec() {
+    }
+
+    public static Encoder encoder(OutputStream out, byte type) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(type);
+        return new Encoder(out);
+    }
+
+    public static Decoder decoder(InputStream in, byte type) throws IOException {
+        byte[] header = in.readNBytes(MAGIC.length + 2);
+        if (header.length < MAGIC.length + 2 || !Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)) {
+            throw new IOException("Format inconnu");
+        }
+        if (header[MAGIC.length] < 1 || header[MAGIC.length] > VERSION) {
+            throw new IOException("Version de schéma non supportée : " + header[MAGIC.length]);
+        }
+        if (header[MAGIC.length + 1] != type) {
+            throw new IOException("Type d'enregistrement inattendu : " + header[MAGIC.length + 1]);
+        }
+        return new Decoder(in);
+    }
+
+    /**
+     * Un utilisateur encodé seul, en-tête compris (export unitaire).
+     */
+    public static byte[] encodeUser(User user) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        try {
+            encoder(out, USER).writeUser(user);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static User decodeUser(byte[] data) throws IOException {
+        User user = decoder(new ByteArrayInputStream(data), USER).readUser();
+        if (user == null) {
+            throw new EOFException("Aucun utilisateur");
+        }
+        return user;
+    }
+
+    // ========================================
+    // ENCODAGE
+    // ========================================
+
+    public static final class Encoder {
+
+        private final OutputStream out;
+
+        private byte[] buffer = new byte[256];
+
+        private int length;
+
+        private Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        public void writeUser(User user) throws IOException {
+            length = 0;
+            putVarLong(mask(user.getId(), user.getUsername(), user.getPassword(), user.getEmail(),
+                    user.getRole(), user.getSsn(), user.getCreditCard(), user.getBalance())
+                    | (user.isActive() ? 1 << 8 : 0));
+            putLong(user.getId());
+            putString(user.getUsername());
+            putString(user.getPassword());
+            putString(user.getEmail());
+            putString(user.getRole());
+            putString(user.getSsn());
+            putString(user.getCreditCard());
+            putDouble(user.getBalance());
+            writeRecord();
+        }
+
+        public void writeTransaction(Transaction transaction) throws IOException {
+            length = 0;
+            LocalDateTime timestamp = transaction.getTimestamp();
+            putVarLong(mask(transaction.getId(), transaction.getFromUserId(), transaction.getToUserId(),
+                    transaction.getAmount(), transaction.getDescription(), timestamp, transaction.getStatus()));
+            putLong(transaction.getId());
+            putLong(transaction.getFromUserId());
+            putLong(transaction.getToUserId());
+            putDouble(transaction.getAmount());
+            putString(transaction.getDescription());
+            if (timestamp != null) {
+                putVarLong(zigzag(timestamp.toEpochSecond(ZoneOffset.UTC)));
+                putVarLong(timestamp.getNano());
+            }
+            putString(transaction.getStatus());
+            writeRecord();
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        private void writeRecord() throws IOException {
+            int size = length;
+            // Préfixe de longueur écrit directement sur le flux
+            while ((size & ~0x7F) != 0) {
+                out.write((size & 0x7F) | 0x80);
+                size >>>= 7;
+            }
+            out.write(size);
+            out.write(buffer, 0, length);
+        }
+
+        private static long mask(Object... fields) {
+            long mask = 0;
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] != null) {
+                    mask |= 1L << i;
+                }
+            }
+            return mask;
+        }
+
+        private void putLong(Long value) {
+            if (value != null) {
+                putVarLong(zigzag(value));
+            }
+        }
+
+        private void putDouble(Double value) {
+            if (value != null) {
+                long bits = Double.doubleToLongBits(value);
+                ensure(8);
+                for (int i = 0; i < 8; i++) {
+                    buffer[length++] = (byte) (bits >>> (8 * i));
+                }
+            }
+        }
+
+        private void putString(String value) {
+            if (value != null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                putVarLong(bytes.length);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buffer, length, bytes.length);
+                length += bytes.length;
+            }
+        }
+
+        private void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    // ========================================
+    // DÉCODAGE
+    // ========================================
+
+    public static final class Decoder {
+
+        private final InputStream in;
+
+        private byte[] buffer = new byte[256];
+
+        private int position;
+
+        private int limit;
+
+        private Decoder(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Utilisateur suivant, ou null en fin de flux. L'identifiant est celui de l'export.
+         */
+        public User readUser() throws IOException {
+            if (!readRecord()) {
+                return null;
+            }
+            long mask = getVarLong();
+            User user = new User();
+            user.setId(has(mask, 0) ? getLong() : null);
+            user.setUsername(has(mask, 1) ? getString() : null);
+            user.setPassword(has(mask, 2) ? getString() : null);
+            user.setEmail(has(mask, 3) ? getString() : null);
+            user.setRole(has(mask, 4) ? getString() : null);
+            user.setSsn(has(mask, 5) ? getString() : null);
+            user.setCreditCard(has(mask, 6) ? getString() : null);
+            user.setBalance(has(mask, 7) ? getDouble() : null);
+            user.setActive(has(mask, 8));
+            return user;
+        }
+
+        /**
+         * Transaction suivante, ou null en fin de flux.
+         */
+        public Transaction readTransaction() throws IOException {
+            if (!readRecord()) {
+                return null;
+            }
+            long mask = getVarLong();
+            Transaction transaction = new Transaction();
+            transaction.setId(has(mask, 0) ? getLong() : null);
+            transaction.setFromUserId(has(mask, 1) ? getLong() : null);
+            transaction.setToUserId(has(mask, 2) ? getLong() : null);
+            transaction.setAmount(has(mask, 3) ? getDouble() : null);
+            transaction.setDescription(has(mask, 4) ? getString() : null);
+            if (has(mask, 5)) {
+                long seconds = unzigzag(getVarLong());
+                long nanos = getVarLong();
+                if (nanos < 0 || nanos > 999_999_999) {
+                    throw new IOException("Horodatage invalide");
+                }
+                try {
+                    transaction.setTimestamp(LocalDateTime.ofEpochSecond(seconds, (int) nanos, ZoneOffset.UTC));
+                } catch (DateTimeException e) {
+                    throw new IOException("Horodatage invalide", e);
+                }
+            }
+            transaction.setStatus(has(mask, 6) ? getString() : null);
+            return transaction;
+        }
+
+        private boolean readRecord() throws IOException {
+            int size = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = in.read();
+                if (b < 0) {
+                    if (shift == 0) {
+                        return false;
+                    }
+                    throw new EOFException("Enregistrement tronqué");
+                }
+                size |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+                if (shift > 21) {
+                    throw new IOException("Longueur d'enregistrement invalide");
+                }
+            }
+            // Un cinquième octet peut faire déborder l'entier : longueur négative
+            if (size < 0) {
+                throw new IOException("Longueur d'enregistrement invalide");
+            }
+            if (size > MAX_RECORD_SIZE) {
+                throw new IOException("Enregistrement trop long : " + size);
+            }
+            if (size > buffer.length) {
+                buffer = new byte[Math.max(size, buffer.length * 2)];
+            }
+            if (in.readNBytes(buffer, 0, size) < size) {
+                throw new EOFException("Enregistrement tronqué");
+            }
+            position = 0;
+            limit = size;
+            return true;
+        }
+
+        private static boolean has(long mask, int field) {
+            return (mask & (1L << field)) != 0;
+        }
+
+        private Long getLong() throws IOException {
+            return unzigzag(getVarLong());
+        }
+
+        private Double getDouble() throws IOException {
+            require(8);
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits |= (buffer[position++] & 0xFFL) << (8 * i);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private String getString() throws IOException {
+            long size = getVarLong();
+            if (size < 0 || size > limit - position) {
+                throw new IOException("Chaîne hors de l'enregistrement");
+            }
+            String value = new String(buffer, position, (int) size, StandardCharsets.UTF_8);
+            position += (int) size;
+            return value;
+        }
+
+        private long getVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                require(1);
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Varint invalide");
+        }
+
+        private void require(int bytes) throws IOException {
+            if (limit - position < bytes) {
+                throw new IOException("Enregistrement tronqué");
+            }
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
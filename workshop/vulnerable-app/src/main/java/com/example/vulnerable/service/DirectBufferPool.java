@@ -0,0 +1,40 @@
+package com.example.vulnerable.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réserve bornée de buffers directs, alloués une fois au démarrage.
+ *
+ * Le nombre de buffers borne la mémoire des envois simultanés : quand la
+ * réserve est vide, acquire() attend qu'un buffer soit rendu (au plus le
+ * délai donné) au lieu d'allouer.
+ */
+final class DirectBufferPool {
+
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    DirectBufferPool(int count, int size) {
+        this.buffers = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            buffers.add(ByteBuffer.allocateDirect(size));
+        }
+    }
+
+    /**
+     * Buffer vidé, ou null si aucun ne s'est libéré dans le délai.
+     */
+    ByteBuffer acquire(long timeoutMillis) throws InterruptedException {
+        ByteBuffer buffer = buffers.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (buffer != null) {
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        buffers.offer(buffer);
+    }
+}
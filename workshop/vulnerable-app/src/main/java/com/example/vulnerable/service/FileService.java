@@ -1,13 +1,59 @@
 package com.example.vulnerable.service;
 
+import com.example.vulnerable.model.FilePage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
 import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 /**
  * Service de gestion des fichiers.
@@ -23,24 +69,133 @@ public class FileService {
 
     private static final Logger logger = LogManager.getLogger(FileService.class);
     
-    private static final String UPLOAD_DIR = "/tmp/uploads/";
+    static final String UPLOAD_DIR = "/tmp/uploads/";
+
+    // Taille d'une fenêtre mappée pour l'envoi des gros fichiers
+    private static final long MAP_WINDOW = 16 * 1024 * 1024;
+
+    private static final DateTimeFormatter RECENT = DateTimeFormatter.ofPattern("MMM dd HH:mm", Locale.ENGLISH);
+
+    private static final DateTimeFormatter OLD = DateTimeFormatter.ofPattern("MMM dd  yyyy", Locale.ENGLISH);
+
+    // Fichiers partiels des envois par morceaux (même système de fichiers : renommage atomique)
+    private static final String PARTIAL_DIR = ".partial";
+
+    @Value("${app.files.mmap-threshold:1048576}")
+    private long mmapThreshold;
+
+    @Value("${app.files.upload.buffer-count:16}")
+    private int bufferCount;
+
+    @Value("${app.files.upload.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${app.files.upload.buffer-wait-ms:5000}")
+    private long bufferWaitMillis;
+
+    @Value("${app.files.upload.ttl-minutes:60}")
+    private long uploadTtlMinutes;
+
+    @Autowired
+    private UploadCatalog uploadCatalog;
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    // Désactivé par défaut : ls, convert et wget gardent leur injection de commande pédagogique
+    @Value("${app.files.in-process.enabled:false}")
+    private boolean inProcess;
+
+    @Value("${app.files.download.timeout-ms:60000}")
+    private long downloadTimeoutMillis;
+
+    private DirectBufferPool bufferPool;
+
+    private HttpClient httpClient;
+
+    private ScheduledExecutorService uploadSweeper;
+
+    @PostConstruct
+    void init() {
+        bufferPool = new DirectBufferPool(bufferCount, bufferSize);
+        uploadSweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "upload-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        uploadSweeper.scheduleWithFixedDelay(this::sweepUploads, 1, 1, TimeUnit.MINUTES);
+        // Pas de fichiers temporaires ImageIO : les images restent en mémoire
+        ImageIO.setUseCache(false);
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @PreDestroy
+    void close() {
+        uploadSweeper.shutdownNow();
+    }
 
     /**
      * VULNÉRABLE : Path Traversal
      * Exemple d'attaque : filename = "../../../etc/passwd"
+     *
+     * Rend les métadonnées du fichier (null s'il n'existe pas) ; le contenu
+     * est envoyé ensuite par {@link #transfer}, sans passer par le heap.
      */
-    public String readFile(String filename) {
+    public StoredFile openFile(String filename) {
         try {
             // VULNÉRABILITÉ : Pas de validation du chemin
             // Un attaquant peut lire n'importe quel fichier système
             Path filePath = Paths.get(UPLOAD_DIR + filename);
-            return new String(Files.readAllBytes(filePath));
+            if (!Files.isRegularFile(filePath)) {
+                return null;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            String contentType = Files.probeContentType(filePath);
+            return new StoredFile(filePath, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    contentType == null ? "application/octet-stream" : contentType);
         } catch (Exception e) {
             logger.error("Erreur lecture fichier: " + filename, e);
             return null;
         }
     }
 
+    /**
+     * Copie length octets du fichier à partir de start.
+     *
+     * Les plages d'au moins app.files.mmap-threshold octets sont lues par
+     * fenêtres mappées en mémoire ; les autres par FileChannel.transferTo.
+     * Dans les deux cas la mémoire utilisée ne dépend pas de la taille du fichier.
+     */
+    public void transfer(StoredFile file, long start, long length, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+            long position = start;
+            long end = Math.min(start + length, channel.size());
+            if (length >= mmapThreshold) {
+                while (position < end) {
+                    long window = Math.min(MAP_WINDOW, end - position);
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+                    while (mapped.hasRemaining()) {
+                        target.write(mapped);
+                    }
+                    position += window;
+                }
+            } else {
+                while (position < end) {
+                    long sent = channel.transferTo(position, end - position, target);
+                    if (sent <= 0) {
+                        // Fichier tronqué pendant l'envoi
+                        break;
+                    }
+                    position += sent;
+                }
+            }
+        }
+        out.flush();
+    }
+
     /**
      * VULNÉRABLE : Path Traversal en écriture
      * Exemple d'attaque : filename = "../../../tmp/malicious.sh"
@@ -62,12 +217,213 @@ public class FileService {
         }
     }
 
+    // ========================================
+    // ENVOI PAR MORCEAUX
+    // ========================================
+
+    /**
+     * VULNÉRABLE : Path Traversal en écriture (comme writeFile)
+     *
+     * Ouvre un envoi par morceaux ; les octets sont écrits dans un fichier
+     * partiel sous UPLOAD_DIR/.partial jusqu'à {@link #completeUpload}.
+     */
+    public Upload startUpload(String filename) throws IOException {
+        // VULNÉRABILITÉ : Pas de validation du chemin de destination
+        Path target = Paths.get(UPLOAD_DIR + filename);
+        Path partDir = Paths.get(UPLOAD_DIR, PARTIAL_DIR);
+        Files.createDirectories(partDir);
+        String id = UUID.randomUUID().toString();
+        Upload upload = new Upload(id, target, partDir.resolve(id + ".part"));
+        Files.createFile(upload.part);
+        uploads.put(id, upload);
+        return upload;
+    }
+
+    public Upload getUpload(String uploadId) {
+        return uploadId == null ? null : uploads.get(uploadId);
+    }
+
+    /**
+     * Ajoute le corps de la requête à l'envoi, à partir de offset.
+     *
+     * Le flux est copié par un buffer direct de la réserve, sans copie du
+     * morceau en mémoire ; l'empreinte SHA-256 suit les octets écrits. L'offset
+     * n'avance qu'après l'écriture et le hachage complets d'un buffer : si le
+     * client se déconnecte ou qu'une écriture échoue, l'envoi reprend au
+     * dernier buffer entier (les octets au-delà sont réécrits).
+     *
+     * @return le nouvel offset
+     * @throws IllegalStateException si offset n'est pas l'offset courant
+     * @throws RejectedExecutionException si aucun buffer ne se libère à temps
+     */
+    public long appendChunk(Upload upload, long offset, InputStream in) throws IOException {
+        if (!upload.lock.tryLock()) {
+            throw new IllegalStateException("Morceau déjà en cours d'écriture");
+        }
+        ByteBuffer buffer = null;
+        try {
+            if (upload.completed || offset != upload.offset) {
+                throw new IllegalStateException("Offset attendu : " + upload.offset);
+            }
+            buffer = bufferPool.acquire(bufferWaitMillis);
+            if (buffer == null) {
+                throw new RejectedExecutionException("Trop d'envois simultanés");
+            }
+            upload.lastActivity = System.currentTimeMillis();
+            ReadableByteChannel source = Channels.newChannel(in);
+            try (FileChannel channel = FileChannel.open(upload.part, StandardOpenOption.WRITE)) {
+                while (source.read(buffer) >= 0) {
+                    if (buffer.position() == 0) {
+                        continue;
+                    }
+                    buffer.flip();
+                    ByteBuffer digested = buffer.duplicate();
+                    long position = upload.offset;
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    // Offset avancé seulement une fois le buffer écrit en entier et
+                    // haché : une écriture coupée laisse l'offset et l'empreinte d'accord
+                    upload.digest.update(digested);
+                    upload.offset = position;
+                    upload.lastActivity = System.currentTimeMillis();
+                    buffer.clear();
+                }
+            }
+            return upload.offset;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Envoi interrompu");
+        } finally {
+            if (buffer != null) {
+                bufferPool.release(buffer);
+            }
+            upload.lock.unlock();
+        }
+    }
+
+    /**
+     * Termine l'envoi : vérifie l'empreinte attendue (si fournie), coupe le
+     * fichier partiel à l'offset, le force sur disque puis le renomme atomiquement vers sa
+     * destination. Un lecteur voit l'ancien fichier ou le nouveau complet.
+     *
+     * @return l'empreinte SHA-256 (hexadécimal) du fichier
+     * @throws IllegalStateException si l'empreinte ne correspond pas
+     */
+    public String completeUpload(Upload upload, String expectedSha256) throws IOException {
+        upload.lock.lock();
+        try {
+            if (upload.completed) {
+                throw new IllegalStateException("Envoi déjà terminé");
+            }
+            String sha256 = toHex(cloneDigest(upload.digest).digest());
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+                throw new IllegalStateException("Empreinte différente : " + sha256);
+            }
+            try (FileChannel channel = FileChannel.open(upload.part, StandardOpenOption.WRITE)) {
+                // Octets d'un buffer écrit en partie avant une coupure, hors empreinte
+                channel.truncate(upload.offset);
+                channel.force(true);
+            }
+            Files.createDirectories(upload.target.getParent());
+            try {
+                Files.move(upload.part, upload.target,
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Destination sur un autre système de fichiers (traversée de chemin)
+                Files.move(upload.part, upload.target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            upload.completed = true;
+            uploads.remove(upload.id);
+            logger.info("Fichier écrit par morceaux: " + upload.target + " (" + upload.offset + " octets)");
+            return sha256;
+        } finally {
+            upload.lock.unlock();
+        }
+    }
+
+    public void abortUpload(Upload upload) throws IOException {
+        upload.lock.lock();
+        try {
+            uploads.remove(upload.id);
+            upload.completed = true;
+            Files.deleteIfExists(upload.part);
+        } finally {
+            upload.lock.unlock();
+        }
+    }
+
+    /**
+     * Abandonne les envois sans morceau depuis app.files.upload.ttl-minutes,
+     * puis supprime les fichiers partiels orphelins aussi anciens (envois
+     * d'une exécution précédente). Un envoi en cours d'écriture est ignoré.
+     */
+    private void sweepUploads() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(uploadTtlMinutes);
+        int expired = 0;
+        for (Upload upload : uploads.values()) {
+            if (upload.lastActivity >= cutoff || !upload.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (!upload.completed && upload.lastActivity < cutoff) {
+                    uploads.remove(upload.id);
+                    upload.completed = true;
+                    Files.deleteIfExists(upload.part);
+                    expired++;
+                }
+            } catch (IOException e) {
+                logger.warn("Suppression de " + upload.part + " impossible", e);
+            } finally {
+                upload.lock.unlock();
+            }
+        }
+        Path partDir = Paths.get(UPLOAD_DIR, PARTIAL_DIR);
+        if (Files.isDirectory(partDir)) {
+            try (Stream<Path> parts = Files.list(partDir)) {
+                for (Iterator<Path> it = parts.iterator(); it.hasNext(); ) {
+                    Path part = it.next();
+                    String name = part.getFileName().toString();
+                    if (name.endsWith(".part") && !uploads.containsKey(name.substring(0, name.length() - 5))
+                            && Files.getLastModifiedTime(part).toMillis() < cutoff) {
+                        Files.deleteIfExists(part);
+                        expired++;
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                logger.warn("Parcours de " + partDir + " impossible", e);
+            }
+        }
+        if (expired > 0) {
+            logger.info("Envois par morceaux abandonnés supprimés : " + expired);
+        }
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
     /**
      * VULNÉRABLE : Command Injection
      * Exemple d'attaque : filename = "test.txt; cat /etc/passwd"
      */
     public String getFileInfo(String filename) {
         try {
+            if (inProcess) {
+                return describe(Paths.get(UPLOAD_DIR + filename));
+            }
             // VULNÉRABILITÉ : Injection de commande via Runtime.exec
             String command = "ls -la " + UPLOAD_DIR + filename;
             
@@ -91,9 +447,17 @@ public class FileService {
 
     /**
      * VULNÉRABLE : Command Injection dans le traitement d'image
+     *
+     * Conversion sur le thread appelant : les requêtes HTTP passent par
+     * ImageJobQueue, qui borne le nombre de conversions simultanées.
      */
     public boolean processImage(String filename, String format) {
         try {
+            if (inProcess) {
+                Path source = Paths.get(UPLOAD_DIR + filename);
+                Path target = Paths.get(UPLOAD_DIR + "converted_" + filename);
+                return convertImage(source, format, target);
+            }
             // VULNÉRABILITÉ : Injection de commande
             // format peut contenir "; rm -rf /"
             String command = "convert " + UPLOAD_DIR + filename + " -format " + format 
@@ -116,6 +480,9 @@ public class FileService {
         try {
             // VULNÉRABILITÉ : SSRF potentiel - pas de validation de l'URL
             // Un attaquant peut accéder à des services internes
+            if (inProcess) {
+                return download(url, Paths.get(UPLOAD_DIR + filename));
+            }
             String command = "wget -O " + UPLOAD_DIR + filename + " " + url;
             
             Process process = Runtime.getRuntime().exec(command);
@@ -129,15 +496,98 @@ public class FileService {
         }
     }
 
+    // ========================================
+    // OPÉRATIONS SANS PROCESSUS EXTERNE
+    // ========================================
+
+    /**
+     * Équivalent de "ls -la" : une ligne par fichier (le répertoire lui-même
+     * puis ses entrées triées pour un répertoire).
+     */
+    private static String describe(Path path) throws IOException {
+        StringBuilder output = new StringBuilder();
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            output.append(describeEntry(path, ".")).append("\n");
+            try (Stream<Path> entries = Files.list(path)) {
+                for (Path entry : (Iterable<Path>) entries.sorted()::iterator) {
+                    output.append(describeEntry(entry, entry.getFileName().toString())).append("\n");
+                }
+            }
+        } else {
+            output.append(describeEntry(path, path.toString())).append("\n");
+        }
+        return output.toString();
+    }
+
+    private static String describeEntry(Path path, String name) throws IOException {
+        PosixFileAttributes attributes = Files.readAttributes(path, PosixFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        char type = attributes.isDirectory() ? 'd' : attributes.isSymbolicLink() ? 'l' : '-';
+        Object links = Files.getAttribute(path, "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+        ZonedDateTime modified = attributes.lastModifiedTime().toInstant().atZone(ZoneId.systemDefault());
+        // Comme ls : l'heure pour les fichiers récents, l'année au-delà de six mois
+        DateTimeFormatter format = modified.isAfter(ZonedDateTime.now().minusMonths(6)) ? RECENT : OLD;
+        return type + PosixFilePermissions.toString(attributes.permissions())
+                + " " + links
+                + " " + attributes.owner().getName()
+                + " " + attributes.group().getName()
+                + " " + attributes.size()
+                + " " + format.format(modified)
+                + " " + name;
+    }
+
+    /**
+     * Conversion par javax.imageio.
+     */
+    private static boolean convertImage(Path source, String format, Path target) throws IOException {
+        String formatName = format.toLowerCase(Locale.ROOT);
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        BufferedImage image = ImageIO.read(source.toFile());
+        if (!writers.hasNext() || image == null) {
+            // Format de sortie inconnu ou fichier source illisible
+            return false;
+        }
+        ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
+        if (image.getColorModel().hasAlpha() && !writers.next().getOriginatingProvider().canEncodeImage(type)) {
+            // JPEG, BMP : pas de canal alpha, on aplatit sur fond blanc
+            BufferedImage opaque = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = opaque.createGraphics();
+            graphics.drawImage(image, 0, 0, Color.WHITE, null);
+            graphics.dispose();
+            image = opaque;
+        }
+        return ImageIO.write(image, formatName, target.toFile());
+    }
+
     /**
-     * Liste les fichiers uploadés
+     * Téléchargement par HttpClient, le corps étant écrit au fil de l'eau dans le fichier.
      */
-    public String[] listFiles() {
-        File uploadDir = new File(UPLOAD_DIR);
-        if (!uploadDir.exists()) {
-            uploadDir.mkdirs();
+    private boolean download(String url, Path target) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(downloadTimeoutMillis))
+                .GET()
+                .build();
+        HttpResponse<Path> response = httpClient.send(request, HttpResponse.BodyHandlers.ofFile(target));
+        if (response.statusCode() / 100 != 2) {
+            Files.deleteIfExists(target);
+            return false;
         }
-        return uploadDir.list();
+        logger.info("Fichier téléchargé depuis " + url);
+        return true;
+    }
+
+    /**
+     * Liste les fichiers uploadés, depuis le catalogue en mémoire
+     */
+    public FilePage listFiles(String prefix, String sort, boolean descending, String cursor, Integer limit) {
+        return uploadCatalog.list(prefix, sort, descending, cursor, limit);
+    }
+
+    /**
+     * Faux tant que le catalogue n'a pas fini son parcours initial
+     */
+    public boolean isCatalogReady() {
+        return uploadCatalog.isReady();
     }
 
     /**
@@ -155,4 +605,92 @@ public class FileService {
             return false;
         }
     }
+
+    /**
+     * Envoi par morceaux en cours. L'offset est le nombre d'octets déjà
+     * écrits : c'est là que le client reprend après une coupure.
+     */
+    public static final class Upload {
+
+        private final String id;
+
+        private final Path target;
+
+        private final Path part;
+
+        private final MessageDigest digest;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile long offset;
+
+        private volatile boolean completed;
+
+        // Dernier morceau reçu (ou ouverture), pour l'expiration des envois abandonnés
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        Upload(String id, Path target, Path part) {
+            this.id = id;
+            this.target = target;
+            this.part = part;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * Fichier à servir : chemin et métadonnées lues une seule fois.
+     */
+    public static final class StoredFile {
+
+        private final Path path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private final String contentType;
+
+        StoredFile(Path path, long size, long lastModified, String contentType) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * ETag dérivé de la taille et de la date de modification : aucun
+         * octet du fichier n'est relu pour le calculer.
+         */
+        public String getEtag() {
+            return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+    }
 }
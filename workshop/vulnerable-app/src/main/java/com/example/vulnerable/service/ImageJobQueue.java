@@ -0,0 +1,359 @@
+package com.example.vulnerable.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conversions d'images en arrière-plan (/admin/process-image).
+ *
+ * Une soumission rend immédiatement un job, exécuté par un nombre borné de
+ * threads dans l'ordre des priorités (FIFO à priorité égale). Au-delà de
+ * queue-capacity jobs en attente, la soumission est refusée
+ * (RejectedExecutionException) au lieu d'empiler.
+ *
+ * Un job identique (même fichier, même format) en attente, en cours ou
+ * réussi sur la même version du fichier source (taille, date) est rendu tel
+ * quel au lieu d'être relancé. Le fichier converti ("converted_" + nom) ne
+ * dépend pas du format : seule la dernière conversion d'un fichier est
+ * réutilisable.
+ */
+@Component
+public class ImageJobQueue {
+
+    private static final Logger logger = LogManager.getLogger(ImageJobQueue.class);
+
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    @Value("${app.files.image.workers:2}")
+    private int workerCount;
+
+    @Value("${app.files.image.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${app.files.image.cache-size:1000}")
+    private int cacheSize;
+
+    @Autowired
+    private FileService fileService;
+
+    private ThreadPoolExecutor workers;
+
+    // Jobs connus (id -> job), les plus anciennement consultés évincés en premier
+    private Map<String, ImageJob> jobs;
+
+    // Dernier job de chaque (fichier, format)
+    private final Map<String, ImageJob> byKey = new HashMap<>();
+
+    // Dernier job ayant écrit le fichier converti de chaque fichier source
+    private final Map<String, ImageJob> lastWritten = new HashMap<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final Latency waitTime = new Latency();
+
+    private final Latency conversionTime = new Latency();
+
+    @PostConstruct
+    void init() {
+        // File de priorité non bornée : la borne est le compteur queued, vérifié à la soumission
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "image-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        jobs = new LinkedHashMap<String, ImageJob>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ImageJob> eldest) {
+                if (size() <= cacheSize) {
+                    return false;
+                }
+                ImageJob job = eldest.getValue();
+                byKey.remove(job.key, job);
+                lastWritten.remove(job.filename, job);
+                return true;
+            }
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Job de conversion de filename vers format : un job identique
+     * réutilisable, sinon un nouveau job mis en file.
+     *
+     * @throws RejectedExecutionException si la file d'attente est pleine
+     */
+    public synchronized ImageJob submit(String filename, String format, Priority priority) {
+        String key = filename + '\0' + format;
+        ImageJob existing = byKey.get(key);
+        if (existing != null && isReusable(existing)) {
+            deduplicated.incrementAndGet();
+            jobs.get(existing.id);
+            return existing;
+        }
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("File de conversion pleine");
+        }
+        ImageJob job = new ImageJob(UUID.randomUUID().toString(), key, filename, format, priority);
+        jobs.put(job.id, job);
+        byKey.put(key, job);
+        submitted.incrementAndGet();
+        workers.execute(new Task(job, sequence.getAndIncrement()));
+        return job;
+    }
+
+    public synchronized ImageJob get(String id) {
+        return jobs.get(id);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<Priority, Integer> depth = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            depth.put(priority, 0);
+        }
+        for (Runnable runnable : workers.getQueue()) {
+            depth.merge(((Task) runnable).job.priority, 1, Integer::sum);
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queued.get());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("queueDepthByPriority", depth);
+        metrics.put("running", workers.getActiveCount());
+        metrics.put("workers", workerCount);
+        metrics.put("submitted", submitted.get());
+        metrics.put("deduplicated", deduplicated.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("completed", completed.get());
+        metrics.put("failed", failed.get());
+        metrics.put("waitMillis", waitTime.toMap());
+        metrics.put("conversionMillis", conversionTime.toMap());
+        return metrics;
+    }
+
+    /**
+     * En attente : toujours. Terminé ou en cours : s'il a réussi (ou peut
+     * encore réussir) sur la version actuelle du fichier source et que son
+     * fichier converti n'a pas été remplacé depuis.
+     */
+    private boolean isReusable(ImageJob job) {
+        switch (job.status) {
+            case "QUEUED":
+                return true;
+            case "RUNNING":
+                return Objects.equals(job.sourceVersion, sourceVersion(job.filename));
+            case "COMPLETED":
+                return lastWritten.get(job.filename) == job
+                        && Objects.equals(job.sourceVersion, sourceVersion(job.filename));
+            default:
+                return false;
+        }
+    }
+
+    private void run(ImageJob job) {
+        queued.decrementAndGet();
+        Instant started = Instant.now();
+        waitTime.record(Duration.between(job.submittedAt, started).toMillis());
+        synchronized (this) {
+            job.sourceVersion = sourceVersion(job.filename);
+            job.startedAt = started;
+            job.status = "RUNNING";
+        }
+        boolean success;
+        try {
+            success = fileService.processImage(job.filename, job.format);
+        } catch (RuntimeException e) {
+            logger.error("Échec de la conversion {}", job.id, e);
+            success = false;
+        }
+        Instant finished = Instant.now();
+        conversionTime.record(Duration.between(started, finished).toMillis());
+        synchronized (this) {
+            job.finishedAt = finished;
+            if (success) {
+                job.status = "COMPLETED";
+                // Les conversions précédentes du même fichier (autre format) sont écrasées
+                lastWritten.put(job.filename, job);
+                completed.incrementAndGet();
+            } else {
+                job.status = "FAILED";
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Version du fichier source (taille et date), null s'il est illisible.
+     */
+    private static String sourceVersion(String filename) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(FileService.UPLOAD_DIR + filename),
+                    BasicFileAttributes.class);
+            return attributes.size() + "-" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException | InvalidPathException e) {
+            return null;
+        }
+    }
+
+    public static final class ImageJob {
+
+        final String id;
+
+        final String key;
+
+        final String filename;
+
+        final String format;
+
+        final Priority priority;
+
+        final Instant submittedAt = Instant.now();
+
+        // Champs suivants modifiés sous le verrou de la file, lus sans (toMap)
+        volatile String status = "QUEUED";
+
+        volatile String sourceVersion;
+
+        volatile Instant startedAt;
+
+        volatile Instant finishedAt;
+
+        ImageJob(String id, String key, String filename, String format, Priority priority) {
+            this.id = id;
+            this.key = key;
+            this.filename = filename;
+            this.format = format;
+            this.priority = priority;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("jobId", id);
+            map.put("filename", filename);
+            map.put("format", format);
+            map.put("priority", priority);
+            map.put("status", status);
+            map.put("submittedAt", submittedAt);
+            map.put("startedAt", startedAt);
+            map.put("finishedAt", finishedAt);
+            if (finishedAt != null) {
+                map.put("conversionMillis", Duration.between(startedAt, finishedAt).toMillis());
+            }
+            return map;
+        }
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+
+        final ImageJob job;
+
+        final long sequence;
+
+        Task(ImageJob job, long sequence) {
+            this.job = job;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            ImageJobQueue.this.run(job);
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = job.priority.compareTo(other.job.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Durées des 1024 dernières mesures (percentiles) et cumul depuis le démarrage.
+     */
+    private static final class Latency {
+
+        private final long[] recent = new long[1024];
+
+        private long count;
+
+        private long total;
+
+        private long max;
+
+        synchronized void record(long millis) {
+            recent[(int) (count % recent.length)] = millis;
+            count++;
+            total += millis;
+            max = Math.max(max, millis);
+        }
+
+        synchronized Map<String, Object> toMap() {
+            long[] window = Arrays.copyOf(recent, (int) Math.min(count, recent.length));
+            Arrays.sort(window);
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("avg", count == 0 ? 0 : total / count);
+            map.put("max", max);
+            map.put("p50", percentile(window, 0.50));
+            map.put("p95", percentile(window, 0.95));
+            map.put("p99", percentile(window, 0.99));
+            return map;
+        }
+
+        private static long percentile(long[] sorted, double rank) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(rank * sorted.length) - 1];
+        }
+    }
+}
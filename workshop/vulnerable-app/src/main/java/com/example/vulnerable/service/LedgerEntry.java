@@ -0,0 +1,46 @@
+package com.example.vulnerable.service;
+
+import com.example.vulnerable.model.Transaction;
+
+/**
+ * Opération du ledger en attente de persistance : un transfert, ou un
+ * ajustement de solde fait par l'administration.
+ *
+ * Les numéros de séquence sont croissants et sans trou ; ils servent de
+ * point de reprise entre le journal et la base.
+ */
+final class LedgerEntry {
+
+    static final byte TRANSFER = 1;
+
+    static final byte ADJUSTMENT = 2;
+
+    final long sequence;
+
+    final byte type;
+
+    // TRANSFER uniquement
+    final Transaction transaction;
+
+    // ADJUSTMENT uniquement
+    final long accountId;
+
+    // Montant du transfert, ou écart appliqué au compte, en centimes
+    final long cents;
+
+    private LedgerEntry(long sequence, byte type, Transaction transaction, long accountId, long cents) {
+        this.sequence = sequence;
+        this.type = type;
+        this.transaction = transaction;
+        this.accountId = accountId;
+        this.cents = cents;
+    }
+
+    static LedgerEntry transfer(long sequence, Transaction transaction, long cents) {
+        return new LedgerEntry(sequence, TRANSFER, transaction, 0, cents);
+    }
+
+    static LedgerEntry adjustment(long sequence, long accountId, long deltaCents) {
+        return new LedgerEntry(sequence, ADJUSTMENT, null, accountId, deltaCents);
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.vulnerable.service;
+
+import com.example.vulnerable.model.Transaction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal append-only des opérations du ledger, en segments mappés en mémoire.
+ *
+ * Une opération est écrite dans le journal avant que le transfert ne soit
+ * confirmé ; la base n'est alimentée qu'ensuite, par lots. Au redémarrage,
+ * les entrées postérieures au dernier point de reprise persisté sont
+ * rejouées. Les segments entièrement persistés sont supprimés.
+ *
+ * Format d'un enregistrement : longueur (int), CRC32 (int), puis la charge
+ * utile. Une longueur nulle marque la fin des données ; un CRC invalide
+ * (écriture interrompue) aussi.
+ *
+ * Les écritures mappées survivent à l'arrêt brutal du processus ; avec
+ * app.ledger.journal.fsync, elles survivent aussi à celui de la machine.
+ */
+@Component
+public class TransactionJournal {
+
+    private static final Logger logger = LogManager.getLogger(TransactionJournal.class);
+
+    private static final String SUFFIX = ".journal";
+
+    private static final int HEADER_SIZE = 8;
+
+    // Taille maximale d'une description journalisée (octets UTF-8)
+    private static final int MAX_DESCRIPTION_BYTES = 4096;
+
+    private static final int MAX_RECORD_SIZE = HEADER_SIZE + 64 + MAX_DESCRIPTION_BYTES;
+
+    @Value("${app.ledger.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.ledger.journal.dir:data/journal}")
+    private String directory;
+
+    @Value("${app.ledger.journal.segment-size:67108864}")
+    private int segmentSize;
+
+    @Value("${app.ledger.journal.fsync:false}")
+    private boolean fsync;
+
+    // Premier numéro de séquence -> fichier du segment
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    private final CRC32 crc = new CRC32();
+
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_SIZE);
+
+    private MappedByteBuffer active;
+
+    // Pas de synchronized : un thread virtuel bloqué dans force() resterait épinglé à son porteur
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Relit les segments existants, transmet au consumer les entrées de
+     * séquence supérieure à afterSequence, puis ouvre le journal en écriture.
+     *
+     * @return la dernière séquence du journal (au moins afterSequence)
+     */
+    public long recover(long afterSequence, Consumer<LedgerEntry> consumer) {
+        lock.lock();
+        try {
+            try {
+                Path dir = Paths.get(directory);
+                Files.createDirectories(dir);
+
+                List<Path> files;
+                try (Stream<Path> listing = Files.list(dir)) {
+                    files = listing.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+
+                long lastSequence = afterSequence;
+                long replayed = 0;
+                boolean corrupted = false;
+                for (Path file : files) {
+                    if (corrupted) {
+                        // Rien n'est fiable après une entrée illisible
+                        Files.move(file, file.resolveSibling(file.getFileName() + ".corrupt"));
+                        logger.error("Segment de journal ignoré après une entrée illisible : {}", file);
+                        continue;
+                    }
+                    MappedByteBuffer buffer = map(file);
+                    segments.put(firstSequence(file), file);
+                    active = buffer;
+                    while (true) {
+                        LedgerEntry entry;
+                        int start = buffer.position();
+                        try {
+                            entry = read(buffer);
+                        } catch (RuntimeException e) {
+                            entry = null;
+                            corrupted = buffer.getInt(start) != 0;
+                        }
+                        if (entry == null) {
+                            buffer.position(start);
+                            if (corrupted) {
+                                logger.warn("Fin de journal interrompue dans {} à l'offset {}", file, start);
+                                zeroFrom(buffer, start);
+                            }
+                            break;
+                        }
+                        lastSequence = Math.max(lastSequence, entry.sequence);
+                        if (entry.sequence > afterSequence) {
+                            consumer.accept(entry);
+                            replayed++;
+                        }
+                    }
+                }
+                logger.info("Journal du ledger ouvert ({} segments, {} entrées rejouées, dernière séquence {})",
+                        segments.size(), replayed, lastSequence);
+                return lastSequence;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Ouverture du journal impossible", e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ajoute une entrée en fin de journal. Les appels doivent suivre l'ordre des séquences.
+     */
+    public void append(LedgerEntry entry) {
+        lock.lock();
+        try {
+            scratch.clear();
+            scratch.position(HEADER_SIZE);
+            writePayload(entry, scratch);
+            int length = scratch.position() - HEADER_SIZE;
+            crc.reset();
+            crc.update(scratch.array(), HEADER_SIZE, length);
+            scratch.putInt(0, length);
+            scratch.putInt(4, (int) crc.getValue());
+            scratch.flip();
+
+            // Garder 4 octets nuls après l'enregistrement : marque de fin
+            if (active == null || active.remaining() < scratch.remaining() + 4) {
+                roll(entry.sequence);
+            }
+            active.put(scratch);
+            if (fsync) {
+                active.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Supprime les segments dont toutes les entrées sont persistées en base.
+     */
+    public void release(long persistedSequence) {
+        lock.lock();
+        try {
+            while (segments.size() > 1) {
+                Map.Entry<Long, Path> oldest = segments.firstEntry();
+                Long next = segments.higherKey(oldest.getKey());
+                if (next - 1 > persistedSequence) {
+                    return;
+                }
+                segments.pollFirstEntry();
+                try {
+                    Files.deleteIfExists(oldest.getValue());
+                } catch (IOException e) {
+                    logger.warn("Suppression du segment {} impossible", oldest.getValue(), e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            if (active != null) {
+                active.force();
+                active = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ========================================
+    // SEGMENTS
+    // ========================================
+
+    private void roll(long firstSequence) {
+        if (active != null) {
+            active.force();
+        }
+        Path file = Paths.get(directory).resolve(String.format("%020d%s", firstSequence, SUFFIX));
+        try {
+            active = map(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Création du segment de journal impossible", e);
+        }
+        segments.put(firstSequence, file);
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Le mapping reste valide après la fermeture du canal
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static void zeroFrom(MappedByteBuffer buffer, int offset) {
+        for (int i = offset; i < buffer.limit(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    // ========================================
+    // ENCODAGE
+    // ========================================
+
+    private static void writePayload(LedgerEntry entry, ByteBuffer out) {
+        out.putLong(entry.sequence);
+        out.put(entry.type);
+        out.putLong(entry.cents);
+        if (entry.type == LedgerEntry.ADJUSTMENT) {
+            out.putLong(entry.accountId);
+            return;
+        }
+        Transaction transaction = entry.transaction;
+        out.putLong(transaction.getFromUserId());
+        out.putLong(transaction.getToUserId());
+        out.putDouble(transaction.getAmount());
+        out.putLong(transaction.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        out.putInt(transaction.getTimestamp().getNano());
+        String description = transaction.getDescription();
+        if (description == null) {
+            out.putInt(-1);
+        } else {
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_DESCRIPTION_BYTES) {
+                throw new RuntimeException("Description trop longue");
+            }
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+    }
+
+    /**
+     * Lit l'entrée à la position courante, ou null en fin de données.
+     */
+    private LedgerEntry read(ByteBuffer in) {
+        if (in.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = in.getInt();
+        int checksum = in.getInt();
+        if (length <= 0 || length > in.remaining()) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        in.get(payload);
+        crc.reset();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            throw new IllegalStateException("CRC invalide");
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(payload);
+        long sequence = data.getLong();
+        byte type = data.get();
+        long cents = data.getLong();
+        if (type == LedgerEntry.ADJUSTMENT) {
+            return LedgerEntry.adjustment(sequence, data.getLong(), cents);
+        }
+        Transaction transaction = new Transaction();
+        transaction.setFromUserId(data.getLong());
+        transaction.setToUserId(data.getLong());
+        transaction.setAmount(data.getDouble());
+        transaction.setTimestamp(LocalDateTime.ofEpochSecond(data.getLong(), data.getInt(), ZoneOffset.UTC));
+        int descriptionLength = data.getInt();
+        if (descriptionLength >= 0) {
+            byte[] bytes = new byte[descriptionLength];
+            data.get(bytes);
+            transaction.setDescription(new String(bytes, StandardCharsets.UTF_8));
+        }
+        transaction.setStatus("COMPLETED");
+        return LedgerEntry.transfer(sequence, transaction, cents);
+    }
+}
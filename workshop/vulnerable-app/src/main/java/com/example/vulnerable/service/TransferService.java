@@ -1,6 +1,9 @@
 package com.example.vulnerable.service;
 
+import com.example.vulnerable.model.BatchTransfer;
+import com.example.vulnerable.model.BatchTransferResult;
 import com.example.vulnerable.model.Transaction;
+import com.example.vulnerable.model.TransactionPage;
 import com.example.vulnerable.model.User;
 import com.example.vulnerable.repository.TransactionRepository;
 import com.example.vulnerable.repository.UserRepository;
@@ -8,9 +11,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service de gestion des transferts.
@@ -27,22 +36,93 @@ public class TransferService {
 
     private static final Logger logger = LogManager.getLogger(TransferService.class);
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    // Curseur de la première page : plus récent que toute transaction
+    private static final LocalDateTime FIRST_PAGE_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 23, 59);
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private TransactionRepository transactionRepository;
 
+    @Autowired
+    private AccountLedger accountLedger;
+
+    @Autowired
+    private BankStatistics statistics;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public TransferService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     /**
      * VULNÉRABLE : IDOR - Pas de vérification que l'utilisateur
      * connecté est bien le propriétaire du compte source
+     *
+     * Si le ledger en mémoire est activé, le transfert y est appliqué sans
+     * transaction JPA ; sinon il passe par la base dans une transaction.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Transaction transfer(Long fromUserId, Long toUserId, Double amount, 
                                 String description, Long currentUserId) {
         
         // VULNÉRABILITÉ : Pas de vérification que currentUserId == fromUserId
         // Un attaquant peut transférer depuis n'importe quel compte !
-        
+
+        if (accountLedger.isEnabled()) {
+            // Confirmé dès l'écriture dans le ledger (et son journal)
+            Transaction transaction = accountLedger.transfer(fromUserId, toUserId, amount, description);
+            statistics.transactionsAdded(1);
+            return transaction;
+        }
+        return transactionTemplate.execute(status ->
+                transferInDatabase(fromUserId, toUserId, amount, description));
+    }
+
+    /**
+     * VULNÉRABLE : IDOR - Comme transfer(), aucun contrôle du compte source.
+     *
+     * Le groupe entier est appliqué dans une seule transaction : les INSERT et
+     * UPDATE partent en lots JDBC au commit (hibernate.jdbc.batch_size). Une
+     * ligne invalide est rejetée avant toute modification et n'annule pas les
+     * autres ; si le commit du groupe échoue, les lignes sont rejouées une à une.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BatchTransferResult> transferBatch(List<BatchTransfer> transfers, Long currentUserId) {
+        if (!accountLedger.isEnabled()) {
+            try {
+                return transactionTemplate.execute(status -> applyBatch(transfers, this::transferInDatabase));
+            } catch (RuntimeException e) {
+                logger.warn("Échec du commit d'un groupe de {} transferts, reprise unitaire : {}",
+                        transfers.size(), e.getMessage());
+            }
+        }
+        return applyBatch(transfers, (from, to, amount, description) ->
+                transfer(from, to, amount, description, currentUserId));
+    }
+
+    private static List<BatchTransferResult> applyBatch(List<BatchTransfer> transfers, TransferOperation operation) {
+        List<BatchTransferResult> results = new ArrayList<>(transfers.size());
+        for (BatchTransfer transfer : transfers) {
+            try {
+                Transaction transaction = operation.apply(transfer.getFromUserId(), transfer.getToUserId(),
+                        transfer.getAmount(), transfer.getDescription());
+                results.add(BatchTransferResult.completed(transfer.getLine(), transaction));
+            } catch (RuntimeException e) {
+                results.add(BatchTransferResult.failed(transfer.getLine(), e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private Transaction transferInDatabase(Long fromUserId, Long toUserId, Double amount,
+                                           String description) {
         User fromUser = userRepository.findById(fromUserId)
                 .orElseThrow(() -> new RuntimeException("Compte source non trouvé"));
         
@@ -75,7 +155,9 @@ public class TransferService {
         transaction.setAmount(amount);
         transaction.setDescription(description);
 
-        return transactionRepository.save(transaction);
+        Transaction saved = transactionRepository.save(transaction);
+        statistics.transactionsAdded(1);
+        return saved;
     }
 
     /**
@@ -87,6 +169,32 @@ public class TransferService {
         return transactionRepository.findAllByUserId(userId);
     }
 
+    /**
+     * VULNÉRABLE : IDOR - Historique paginé, sans plus de contrôle d'accès.
+     * La page suivante est demandée avec le nextCursor de la précédente.
+     */
+    @Transactional(readOnly = true)
+    public TransactionPage getTransactionHistoryPage(Long userId, String cursor, Integer limit) {
+        int size = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        LocalDateTime beforeTimestamp = cursor == null
+                ? FIRST_PAGE_TIMESTAMP : TransactionPage.cursorTimestamp(cursor);
+        Long beforeId = cursor == null ? Long.MAX_VALUE : TransactionPage.cursorId(cursor);
+
+        List<Transaction> transactions = transactionRepository.findPageByUserId(
+                userId, beforeTimestamp, beforeId, size);
+        String nextCursor = transactions.size() < size
+                ? null : TransactionPage.cursorAfter(transactions.get(size - 1));
+        return new TransactionPage(transactions, nextCursor);
+    }
+
+    /**
+     * VULNÉRABLE : IDOR - Historique complet transmis ligne à ligne au consumer.
+     */
+    @Transactional(readOnly = true)
+    public void streamTransactionHistory(Long userId, Consumer<Transaction> consumer) {
+        transactionRepository.streamAllByUserId(userId, consumer);
+    }
+
     /**
      * VULNÉRABLE : Permet de voir le solde de n'importe qui
      */
@@ -94,8 +202,10 @@ public class TransferService {
         // VULNÉRABILITÉ : IDOR
         User user = userRepository.findById(userId).orElse(null);
         if (user != null) {
-            logger.info("Consultation du solde de " + user.getUsername() + ": " + user.getBalance());
-            return user.getBalance();
+            Double balance = accountLedger.isEnabled()
+                    ? accountLedger.getBalance(userId) : user.getBalance();
+            logger.info("Consultation du solde de {}: {}", user.getUsername(), balance);
+            return balance;
         }
         return null;
     }
@@ -108,9 +218,19 @@ public class TransferService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
         
-        user.setBalance(newBalance);
-        userRepository.save(user);
+        if (accountLedger.isEnabled()) {
+            // Persisté par le ledger, dans l'ordre de ses autres opérations
+            accountLedger.setBalance(userId, newBalance);
+        } else {
+            user.setBalance(newBalance);
+            userRepository.save(user);
+        }
         
-        logger.info("Admin: Solde de " + user.getUsername() + " modifié à " + newBalance);
+        logger.info("Admin: Solde de {} modifié à {}", user.getUsername(), newBalance);
+    }
+
+    @FunctionalInterface
+    private interface TransferOperation {
+        Transaction apply(Long fromUserId, Long toUserId, Double amount, String description);
     }
 }
@@ -0,0 +1,461 @@
+package com.example.vulnerable.service;
+
+import com.example.vulnerable.model.FileEntry;
+import com.example.vulnerable.model.FilePage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Catalogue en mémoire des fichiers du répertoire d'upload (premier niveau,
+ * fichiers réguliers, hors fichiers cachés).
+ *
+ * Construit au démarrage puis tenu à jour par un WatchService : les listes
+ * (pagination, recherche par préfixe, tri par nom, taille ou date) ne
+ * touchent jamais au système de fichiers. Trois index triés partagent les
+ * mêmes entrées : par nom, par (taille, nom) et par (date, nom).
+ *
+ * Les empreintes SHA-256 sont calculées par un thread dédié, après chaque
+ * création ou modification.
+ */
+@Component
+public class UploadCatalog {
+
+    private static final Logger logger = LogManager.getLogger(UploadCatalog.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private static final Comparator<FileEntry> BY_SIZE = Comparator.comparingLong(FileEntry::getSize)
+            .thenComparing(FileEntry::getName);
+
+    private static final Comparator<FileEntry> BY_DATE = Comparator.comparingLong(FileEntry::getLastModified)
+            .thenComparing(FileEntry::getName);
+
+    private final Path directory = Paths.get(FileService.UPLOAD_DIR);
+
+    // Remplacés une seule fois, par la construction initiale
+    private volatile ConcurrentSkipListMap<String, FileEntry> byName = new ConcurrentSkipListMap<>();
+
+    private volatile ConcurrentSkipListSet<FileEntry> bySize = new ConcurrentSkipListSet<>(BY_SIZE);
+
+    private volatile ConcurrentSkipListSet<FileEntry> byDate = new ConcurrentSkipListSet<>(BY_DATE);
+
+    // Fichiers en attente d'empreinte : une seule tâche par fichier
+    private final Set<String> pendingHashes = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService hasher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "upload-catalog-hasher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WatchService watchService;
+
+    private volatile boolean ready;
+
+    /**
+     * Enregistre la surveillance puis construit le catalogue sur le thread
+     * de surveillance, sans retarder la fin du démarrage. La surveillance est
+     * enregistrée avant le parcours : un fichier créé pendant le parcours
+     * n'est pas manqué. Jusqu'à la fin du parcours, isReady() est faux et le
+     * catalogue est vide.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread watcher = new Thread(this::loadAndWatch, "upload-catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        hasher.shutdownNow();
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Page du catalogue.
+     *
+     * @param prefix préfixe du nom (facultatif)
+     * @param sort   "name" (défaut), "size" ou "date"
+     * @param cursor nextCursor de la page précédente, obtenu avec le même tri
+     */
+    public FilePage list(String prefix, String sort, boolean descending, String cursor, Integer limit) {
+        int size = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        String by = sort == null ? "name" : sort;
+        if (!by.equals("name") && !by.equals("size") && !by.equals("date")) {
+            throw new IllegalArgumentException("Tri inconnu : " + sort);
+        }
+        boolean hasPrefix = prefix != null && !prefix.isEmpty();
+
+        NavigableMap<String, FileEntry> names = byName;
+        if (hasPrefix) {
+            names = names.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        }
+        Iterator<FileEntry> entries;
+        if (by.equals("name")) {
+            if (descending) {
+                names = names.descendingMap();
+            }
+            if (cursor != null) {
+                names = names.tailMap(cursor, false);
+            }
+            entries = names.values().iterator();
+        } else {
+            FileEntry after = cursor == null ? null : fromCursor(cursor, by.equals("size"));
+            if (hasPrefix) {
+                Comparator<FileEntry> order = by.equals("size") ? BY_SIZE : BY_DATE;
+                entries = firstAfter(names.values(), descending ? order.reversed() : order, after, size + 1);
+            } else {
+                NavigableSet<FileEntry> sorted = by.equals("size") ? bySize : byDate;
+                if (descending) {
+                    sorted = sorted.descendingSet();
+                }
+                if (after != null) {
+                    sorted = sorted.tailSet(after, false);
+                }
+                entries = sorted.iterator();
+            }
+        }
+
+        List<FileEntry> files = new ArrayList<>(size);
+        while (files.size() < size && entries.hasNext()) {
+            files.add(entries.next());
+        }
+        String nextCursor = null;
+        if (entries.hasNext()) {
+            FileEntry last = files.get(size - 1);
+            nextCursor = by.equals("name") ? last.getName()
+                    : (by.equals("size") ? last.getSize() : last.getLastModified()) + ":" + last.getName();
+        }
+        return new FilePage(files, nextCursor);
+    }
+
+    /**
+     * Vrai une fois le parcours initial terminé.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public FileEntry get(String name) {
+        return byName.get(name);
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    // ========================================
+    // MISE À JOUR
+    // ========================================
+
+    private void loadAndWatch() {
+        long start = System.nanoTime();
+        try {
+            load();
+        } catch (IOException e) {
+            logger.error("Construction du catalogue des uploads impossible", e);
+            return;
+        }
+        ready = true;
+        logger.info("Catalogue des uploads construit : {} fichiers en {} ms",
+                byName.size(), (System.nanoTime() - start) / 1_000_000);
+        watch();
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Événements perdus : on repart du contenu réel du répertoire
+                    logger.warn("Événements de fichiers perdus, nouveau parcours du répertoire d'upload");
+                    rescan();
+                } else {
+                    refresh(directory.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                logger.warn("Répertoire d'upload supprimé : catalogue figé");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parcours initial. Les index sont construits triés puis convertis en
+     * bloc (construction linéaire des skip lists à partir d'un tri) : bien
+     * plus rapide que 3 insertions concurrentes par fichier. Les événements
+     * reçus pendant le parcours attendent dans le WatchService.
+     */
+    private void load() throws IOException {
+        TreeMap<String, FileEntry> names = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                FileEntry entry = read(file);
+                if (entry != null) {
+                    names.put(entry.getName(), entry);
+                }
+            }
+        }
+        TreeSet<FileEntry> sizes = new TreeSet<>(BY_SIZE);
+        sizes.addAll(names.values());
+        TreeSet<FileEntry> dates = new TreeSet<>(BY_DATE);
+        dates.addAll(names.values());
+        synchronized (this) {
+            byName = new ConcurrentSkipListMap<>(names);
+            bySize = new ConcurrentSkipListSet<>(sizes);
+            byDate = new ConcurrentSkipListSet<>(dates);
+        }
+        List<String> unhashed = new ArrayList<>(names.keySet());
+        if (!unhashed.isEmpty()) {
+            // Une seule tâche pour tout le parcours plutôt qu'une par fichier
+            hasher.execute(() -> unhashed.forEach(this::hash));
+        }
+    }
+
+    private void rescan() {
+        Set<String> seen = new HashSet<>();
+        List<String> changed = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                seen.add(name);
+                if (update(file)) {
+                    changed.add(name);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Parcours du répertoire d'upload impossible", e);
+            return;
+        }
+        for (String name : byName.keySet()) {
+            if (!seen.contains(name)) {
+                remove(name);
+            }
+        }
+        if (!changed.isEmpty()) {
+            hasher.execute(() -> changed.forEach(this::hash));
+        }
+    }
+
+    private void refresh(Path file) {
+        if (update(file)) {
+            scheduleHash(file.getFileName().toString());
+        }
+    }
+
+    /**
+     * Relit les attributs d'un fichier ; le retire du catalogue s'il a disparu.
+     *
+     * @return true si l'entrée a changé et que son empreinte est à calculer
+     */
+    private boolean update(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".")) {
+            return false;
+        }
+        FileEntry entry = read(file);
+        if (entry == null) {
+            remove(name);
+            return false;
+        }
+        FileEntry previous = byName.get(name);
+        if (previous != null && previous.getSize() == entry.getSize()
+                && previous.getLastModified() == entry.getLastModified()) {
+            return false;
+        }
+        put(entry);
+        return true;
+    }
+
+    /**
+     * Entrée (sans empreinte) d'un fichier régulier visible, null sinon.
+     */
+    private static FileEntry read(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".")) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new FileEntry(name, attributes.size(), attributes.lastModifiedTime().toMillis(), null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private synchronized void put(FileEntry entry) {
+        FileEntry previous = byName.put(entry.getName(), entry);
+        if (previous != null) {
+            bySize.remove(previous);
+            byDate.remove(previous);
+        }
+        bySize.add(entry);
+        byDate.add(entry);
+    }
+
+    private synchronized void remove(String name) {
+        FileEntry previous = byName.remove(name);
+        if (previous != null) {
+            bySize.remove(previous);
+            byDate.remove(previous);
+        }
+    }
+
+    // ========================================
+    // EMPREINTES
+    // ========================================
+
+    private void scheduleHash(String name) {
+        if (pendingHashes.add(name)) {
+            hasher.execute(() -> {
+                pendingHashes.remove(name);
+                hash(name);
+            });
+        }
+    }
+
+    private void hash(String name) {
+        FileEntry entry = byName.get(name);
+        if (entry == null || entry.getSha256() != null) {
+            return;
+        }
+        String sha256;
+        try {
+            sha256 = sha256(directory.resolve(name));
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            logger.warn("Empreinte de {} impossible", name, e);
+            return;
+        }
+        synchronized (this) {
+            // Fichier modifié pendant le calcul : une autre tâche est prévue
+            if (byName.get(name) == entry) {
+                FileEntry hashed = new FileEntry(name, entry.getSize(), entry.getLastModified(), sha256);
+                byName.put(name, hashed);
+                bySize.remove(entry);
+                bySize.add(hashed);
+                byDate.remove(entry);
+                byDate.add(hashed);
+            }
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return FileService.toHex(digest.digest());
+    }
+
+    /**
+     * Les count premières entrées situées après le curseur dans l'ordre
+     * donné. Le sous-arbre du préfixe est parcouru une fois en ne gardant
+     * que count entrées (tas borné) : ni copie ni tri de toutes les entrées
+     * du préfixe à chaque page.
+     */
+    private static Iterator<FileEntry> firstAfter(Collection<FileEntry> candidates, Comparator<FileEntry> order,
+                                                  FileEntry after, int count) {
+        // Tas inversé : la tête est la plus grande des entrées retenues
+        PriorityQueue<FileEntry> kept = new PriorityQueue<>(count, order.reversed());
+        for (FileEntry entry : candidates) {
+            if (after != null && order.compare(entry, after) <= 0) {
+                continue;
+            }
+            if (kept.size() < count) {
+                kept.add(entry);
+            } else if (order.compare(entry, kept.peek()) < 0) {
+                kept.poll();
+                kept.add(entry);
+            }
+        }
+        List<FileEntry> page = new ArrayList<>(kept);
+        page.sort(order);
+        return page.iterator();
+    }
+
+    /**
+     * Entrée fictive placée à la position du curseur "valeur:nom".
+     */
+    private static FileEntry fromCursor(String cursor, boolean bySizeOrder) {
+        int separator = cursor.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Curseur invalide : " + cursor);
+        }
+        long value = Long.parseLong(cursor.substring(0, separator));
+        String name = cursor.substring(separator + 1);
+        return bySizeOrder ? new FileEntry(name, value, 0, null) : new FileEntry(name, 0, value, null);
+    }
+}
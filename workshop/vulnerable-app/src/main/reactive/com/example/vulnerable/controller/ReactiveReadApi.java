@@ -0,0 +1,179 @@
+package com.example.vulnerable.controller;
+
+import com.example.vulnerable.model.Transaction;
+import com.example.vulnerable.model.TransactionPage;
+import com.example.vulnerable.repository.ReactiveAccountReader;
+import com.example.vulnerable.service.AccountLedger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * API de lecture réactive (soldes, historique), servie par WebFlux sur un
+ * serveur Reactor Netty distinct de Tomcat (app.reactive.port).
+ *
+ * Les clients qui interrogent les soldes en boucle n'occupent ni thread ni
+ * connexion Tomcat : les écritures (transferts) gardent tout le pool.
+ *
+ * L'historique est un flux Server-Sent Events paginé par clé : une page
+ * n'est lue en base que lorsque le client a consommé la précédente (la
+ * demande suit l'écriture sur la socket). L'identifiant de chaque
+ * événement est un curseur : un client reconnecté reprend avec
+ * Last-Event-ID.
+ */
+@Component
+@ConditionalOnProperty(name = "app.reactive.enabled", havingValue = "true")
+public class ReactiveReadApi {
+
+    private static final Logger logger = LogManager.getLogger(ReactiveReadApi.class);
+
+    private static final LocalDateTime FIRST_PAGE_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 23, 59);
+
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private static final ParameterizedTypeReference<ServerSentEvent<Transaction>> EVENT_TYPE =
+            new ParameterizedTypeReference<ServerSentEvent<Transaction>>() {
+            };
+
+    @Value("${app.reactive.port:8081}")
+    private int port;
+
+    @Value("${app.reactive.page-size:200}")
+    private int pageSize;
+
+    @Autowired
+    private ReactiveAccountReader reader;
+
+    @Autowired
+    private AccountLedger accountLedger;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private DisposableServer server;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Même ObjectMapper que Spring MVC : dates ISO-8601, mêmes modules
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes(), strategies)))
+                .bindNow();
+        logger.info("API de lecture réactive démarrée sur le port {}", server.port());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    private RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .GET("/api/balance/{userId}", this::balance)
+                .GET("/api/history/{userId}", this::history)
+                .build();
+    }
+
+    /**
+     * VULNÉRABLE : même IDOR que /dashboard/api/balance/{userId}
+     */
+    private Mono<ServerResponse> balance(ServerRequest request) {
+        Long userId = userId(request);
+        if (userId == null) {
+            return ServerResponse.badRequest().build();
+        }
+        // Ledger actif : le solde en mémoire est en avance sur la base
+        Double loaded = accountLedger.isEnabled() ? accountLedger.getLoadedBalance(userId) : null;
+        Mono<Double> balance = loaded != null ? Mono.just(loaded) : reader.findBalance(userId);
+        return balance
+                .flatMap(value -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(value))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    /**
+     * VULNÉRABLE : même IDOR que /dashboard/history/{userId}
+     *
+     * Événements "transaction" (du plus récent au plus ancien), puis "end".
+     */
+    private Mono<ServerResponse> history(ServerRequest request) {
+        Long userId = userId(request);
+        if (userId == null) {
+            return ServerResponse.badRequest().build();
+        }
+        String cursor = request.headers().firstHeader(LAST_EVENT_ID);
+        if (cursor == null) {
+            cursor = request.queryParam("cursor").orElse(null);
+        }
+        LocalDateTime beforeTimestamp;
+        Long beforeId;
+        try {
+            beforeTimestamp = cursor == null ? FIRST_PAGE_TIMESTAMP : TransactionPage.cursorTimestamp(cursor);
+            beforeId = cursor == null ? Long.MAX_VALUE : TransactionPage.cursorId(cursor);
+        } catch (RuntimeException e) {
+            return ServerResponse.badRequest().build();
+        }
+
+        Flux<ServerSentEvent<Transaction>> events = pages(userId, beforeTimestamp, beforeId)
+                // Une page à la fois : la suivante n'est demandée qu'une fois celle-ci envoyée
+                .flatMapIterable(Function.identity(), 1)
+                .map(transaction -> ServerSentEvent.builder(transaction)
+                        .id(TransactionPage.cursorAfter(transaction))
+                        .event("transaction")
+                        .build())
+                .concatWithValues(ServerSentEvent.<Transaction>builder().event("end").build());
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(events, EVENT_TYPE);
+    }
+
+    private Flux<List<Transaction>> pages(Long userId, LocalDateTime beforeTimestamp, Long beforeId) {
+        return reader.findHistoryPage(userId, beforeTimestamp, beforeId, pageSize).collectList()
+                .expand(page -> {
+                    if (page.size() < pageSize) {
+                        return Mono.empty();
+                    }
+                    Transaction last = page.get(page.size() - 1);
+                    return reader.findHistoryPage(userId, last.getTimestamp(), last.getId(), pageSize).collectList();
+                });
+    }
+
+    private static Long userId(ServerRequest request) {
+        try {
+            return Long.valueOf(request.pathVariable("userId"));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
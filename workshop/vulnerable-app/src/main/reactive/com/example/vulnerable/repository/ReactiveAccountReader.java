@@ -0,0 +1,117 @@
+package com.example.vulnerable.repository;
+
+import com.example.vulnerable.model.Transaction;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+
+/**
+ * Lectures R2DBC de l'API réactive : soldes et pages d'historique, sur la
+ * même base que JPA (app.reactive.r2dbc.url).
+ *
+ * Chaque lecture emprunte une connexion au pool R2DBC le temps de la
+ * requête et la rend à la fin (ou à l'annulation) du flux. Le pilote
+ * r2dbc-h2 enveloppe le moteur H2 embarqué, dont les appels sont bloquants :
+ * les lectures s'exécutent sur Schedulers.boundedElastic(), jamais sur la
+ * boucle d'événements Netty. Le pool est créé
+ * ici plutôt que par Spring Boot : une ConnectionFactory dans le contexte
+ * désactive l'auto-configuration de la DataSource JDBC.
+ */
+@Repository
+@ConditionalOnProperty(name = "app.reactive.enabled", havingValue = "true")
+public class ReactiveAccountReader {
+
+    private static final String BALANCE_SQL = "SELECT balance FROM users WHERE id = $1";
+
+    // Même requête par clé (timestamp, id) que TransactionRepository.findPageByUserId
+    private static final String PAGE_SQL = "SELECT * FROM ("
+            + "(SELECT * FROM transactions WHERE from_user_id = $1"
+            + " AND (timestamp < $2 OR (timestamp = $2 AND id < $3))"
+            + " ORDER BY timestamp DESC, id DESC LIMIT $4)"
+            + " UNION "
+            + "(SELECT * FROM transactions WHERE to_user_id = $1"
+            + " AND (timestamp < $2 OR (timestamp = $2 AND id < $3))"
+            + " ORDER BY timestamp DESC, id DESC LIMIT $4)"
+            + ") ORDER BY timestamp DESC, id DESC LIMIT $4";
+
+    @Value("${app.reactive.r2dbc.url:r2dbc:h2:mem:///vulnerablebank}")
+    private String url;
+
+    @Value("${app.reactive.r2dbc.username:admin}")
+    private String username;
+
+    @Value("${app.reactive.r2dbc.password:admin123}")
+    private String password;
+
+    @Value("${app.reactive.r2dbc.pool-size:10}")
+    private int poolSize;
+
+    private ConnectionPool connectionFactory;
+
+    @PostConstruct
+    void init() {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        connectionFactory = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(1)
+                .maxSize(poolSize)
+                .build());
+    }
+
+    @PreDestroy
+    void close() {
+        connectionFactory.dispose();
+    }
+
+    public Mono<Double> findBalance(Long userId) {
+        return Mono.usingWhen(connectionFactory.create(),
+                connection -> Mono.from(connection.createStatement(BALANCE_SQL)
+                                .bind("$1", userId)
+                                .execute())
+                        .flatMap(result -> Mono.from(result.map((row, metadata) -> row.get("balance", Double.class)))),
+                Connection::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Transactions de l'utilisateur strictement avant (beforeTimestamp, beforeId), plus récentes d'abord.
+     */
+    public Flux<Transaction> findHistoryPage(Long userId, LocalDateTime beforeTimestamp, Long beforeId, int limit) {
+        return Flux.usingWhen(connectionFactory.create(),
+                connection -> Flux.from(connection.createStatement(PAGE_SQL)
+                                .bind("$1", userId)
+                                .bind("$2", beforeTimestamp)
+                                .bind("$3", beforeId)
+                                .bind("$4", limit)
+                                .execute())
+                        .flatMap(result -> result.map((row, metadata) -> toTransaction(row))),
+                Connection::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Transaction toTransaction(Row row) {
+        return new Transaction(
+                row.get("id", Long.class),
+                row.get("from_user_id", Long.class),
+                row.get("to_user_id", Long.class),
+                row.get("amount", Double.class),
+                row.get("description", String.class),
+                row.get("timestamp", LocalDateTime.class),
+                row.get("status", String.class));
+    }
+}
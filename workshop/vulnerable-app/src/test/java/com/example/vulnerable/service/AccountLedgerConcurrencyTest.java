@@ -0,0 +1,188 @@
+package com.example.vulnerable.service;
+
+import com.example.vulnerable.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ledger activé : transferts concurrents avec des modifications du même
+ * compte hors du ledger (promotion admin, mise à jour SQL du solde).
+ * Aucun écart en file ne doit être perdu ni compté deux fois, et des débits
+ * concurrents ne doivent jamais mettre un compte à découvert.
+ */
+@SpringBootTest(properties = {
+        "app.ledger.enabled=true",
+        "app.ledger.flush-batch-size=10"
+})
+class AccountLedgerConcurrencyTest {
+
+    private static final long JOHN = 2;
+
+    private static final long JANE = 3;
+
+    private static final long BOB = 4;
+
+    private static final long ALICE = 5;
+
+    private static final long ADMIN = 1;
+
+    private static final int TRANSFERS = 200;
+
+    @Autowired
+    private AccountLedger accountLedger;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void transfersRacingAdminUpdatesKeepLedgerAndDatabaseEqual() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        double johnBefore = databaseBalance(JOHN);
+        double janeBefore = databaseBalance(JANE);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < TRANSFERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return transferService.transfer(JOHN, JANE, 1.0, "stress", JOHN);
+                }));
+                if (i % 10 == 0) {
+                    // Comme POST /admin/promote/2 : entité chargée puis fusionnée dans la requête
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return transaction.execute(status -> {
+                            User user = userService.findById(JOHN);
+                            user.setRole("ADMIN");
+                            return userService.updateUser(user);
+                        });
+                    }));
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        userService.updateBalance(JOHN, "0");
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(accountLedger.awaitPersisted(30, TimeUnit.SECONDS));
+
+        assertEquals(johnBefore - TRANSFERS, databaseBalance(JOHN), 0.001);
+        assertEquals(janeBefore + TRANSFERS, databaseBalance(JANE), 0.001);
+        assertEquals(databaseBalance(JOHN), accountLedger.getBalance(JOHN), 0.001);
+        assertEquals(databaseBalance(JANE), accountLedger.getBalance(JANE), 0.001);
+    }
+
+    @Test
+    void concurrentDebitsBeyondBalanceNeverOverdraw() throws Exception {
+        double before = accountLedger.getBalance(ALICE);
+        double amount = 250.0;
+        int threads = 8;
+        // Débits demandés : deux fois le solde
+        int perThread = (int) Math.ceil(2 * before / amount / threads);
+        int expected = (int) Math.floor(before / amount);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        Future<Double> lowest;
+        try {
+            // Plus petit solde observé (ledger et base) pendant les transferts
+            lowest = executor.submit(() -> {
+                double min = Double.MAX_VALUE;
+                while (running.get()) {
+                    min = Math.min(min, Math.min(accountLedger.getBalance(ALICE), databaseBalance(ALICE)));
+                }
+                return min;
+            });
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        try {
+                            transferService.transfer(ALICE, ADMIN, amount, "overdraft", ALICE);
+                            succeeded.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            assertEquals("Solde insuffisant", e.getMessage());
+                            refused.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            assertTrue(lowest.get(30, TimeUnit.SECONDS) >= 0);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+        assertTrue(accountLedger.awaitPersisted(30, TimeUnit.SECONDS));
+
+        assertEquals(expected, succeeded.get());
+        assertEquals(threads * perThread - expected, refused.get());
+        assertEquals(before - expected * amount, accountLedger.getBalance(ALICE), 0.001);
+        assertEquals(accountLedger.getBalance(ALICE), databaseBalance(ALICE), 0.001);
+        assertTrue(databaseBalance(ALICE) >= 0);
+    }
+
+    @Test
+    void massAssignedBalanceBecomesJournaledAdjustment() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        double before = accountLedger.getBalance(BOB);
+
+        transaction.execute(status -> {
+            User user = userService.findById(BOB);
+            user.setBalance(before + 100);
+            return userService.updateUser(user);
+        });
+        assertTrue(accountLedger.awaitPersisted(30, TimeUnit.SECONDS));
+
+        assertEquals(before + 100, accountLedger.getBalance(BOB), 0.001);
+        assertEquals(before + 100, databaseBalance(BOB), 0.001);
+    }
+
+    private double databaseBalance(long userId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM users WHERE id = ?", Double.class, userId);
+    }
+}
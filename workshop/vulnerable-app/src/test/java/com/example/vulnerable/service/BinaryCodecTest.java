@@ -0,0 +1,138 @@
+package com.example.vulnerable.service;
+
+import com.example.vulnerable.model.Transaction;
+import com.example.vulnerable.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Décodage d'entrées malformées : toujours une IOException, jamais une
+ * exception d'indice ou une allocation démesurée.
+ */
+class BinaryCodecTest {
+
+    private static final byte[] HEADER = {'V', 'B', 'K', BinaryCodec.VERSION, BinaryCodec.USER};
+
+    @Test
+    void roundTripsUser() throws IOException {
+        User user = new User(7L, "john", "secret", "john@example.com", "USER",
+                "123-45-6789", "4111111111111111", 5000.0, true);
+
+        assertEquals(user, BinaryCodec.decodeUser(BinaryCodec.encodeUser(user)));
+    }
+
+    @Test
+    void roundTripsInactiveUser() throws IOException {
+        User user = new User(8L, "jane", "jane2024", "jane@example.com", "ADMIN",
+                "456-78-9012", "4333333333333333", -12.5, false);
+
+        assertEquals(user, BinaryCodec.decodeUser(BinaryCodec.encodeUser(user)));
+    }
+
+    @Test
+    void roundTripsUserWithNullFields() throws IOException {
+        User user = new User(null, "bob", null, null, null, null, null, null, true);
+
+        User decoded = BinaryCodec.decodeUser(BinaryCodec.encodeUser(user));
+
+        assertEquals(user, decoded);
+        assertNull(decoded.getId());
+        assertNull(decoded.getBalance());
+    }
+
+    @Test
+    void roundTripsTransactionWithNanoseconds() throws IOException {
+        Transaction transaction = new Transaction(42L, 2L, 3L, 99.99, "Loyer",
+                LocalDateTime.of(2024, 3, 15, 10, 30, 45, 123_456_789), "COMPLETED");
+        Transaction empty = new Transaction(null, null, null, null, null, null, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.Encoder encoder = BinaryCodec.encoder(out, BinaryCodec.TRANSACTION);
+        encoder.writeTransaction(transaction);
+        encoder.writeTransaction(empty);
+        encoder.flush();
+        BinaryCodec.Decoder decoder = BinaryCodec.decoder(
+                new ByteArrayInputStream(out.toByteArray()), BinaryCodec.TRANSACTION);
+
+        assertEquals(transaction, decoder.readTransaction());
+        assertEquals(empty, decoder.readTransaction());
+        assertNull(decoder.readTransaction());
+    }
+
+    @Test
+    void rejectsVersionOutsideSupportedRange() {
+        for (int version : new int[]{0, -1, BinaryCodec.VERSION + 1}) {
+            byte[] data = {'V', 'B', 'K', (byte) version, BinaryCodec.USER};
+
+            IOException e = assertThrows(IOException.class, () -> BinaryCodec.decodeUser(data));
+            assertEquals("Version de schéma non supportée : " + version, e.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsOutOfRangeTimestamp() {
+        // Masque timestamp (bit 5), secondes 0, nanosecondes 1e9 (varint sur cinq octets)
+        byte[] nanos = transactionRecord(0x20, 0x00, 0x80, 0x94, 0xEB, 0xDC, 0x03);
+        // Secondes bien au-delà de LocalDateTime.MAX (zigzag de 2^62, varint sur dix octets)
+        byte[] seconds = transactionRecord(0x20, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x01, 0x00);
+
+        for (byte[] data : new byte[][]{nanos, seconds}) {
+            IOException e = assertThrows(IOException.class, () -> BinaryCodec.decoder(
+                    new ByteArrayInputStream(data), BinaryCodec.TRANSACTION).readTransaction());
+            assertEquals("Horodatage invalide", e.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsRecordLengthOverflowingToNegative() {
+        // 0xFFFFFFFF sur cinq octets : -1 une fois dans un int
+        byte[] data = withHeader(0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+
+        IOException e = assertThrows(IOException.class, () -> BinaryCodec.decodeUser(data));
+        assertEquals("Longueur d'enregistrement invalide", e.getMessage());
+    }
+
+    @Test
+    void rejectsNegativeStringLength() {
+        // Enregistrement de 11 octets : masque username, puis longueur -1 (varint sur dix octets)
+        byte[] data = withHeader(11, 0x02,
+                0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01);
+
+        IOException e = assertThrows(IOException.class, () -> BinaryCodec.decodeUser(data));
+        assertEquals("Chaîne hors de l'enregistrement", e.getMessage());
+    }
+
+    @Test
+    void rejectsUnterminatedVarint() {
+        byte[] data = withHeader(3, 0x02, 0x80, 0x80);
+
+        assertThrows(IOException.class, () -> BinaryCodec.decodeUser(data));
+    }
+
+    private static byte[] transactionRecord(int... bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{'V', 'B', 'K', BinaryCodec.VERSION, BinaryCodec.TRANSACTION});
+        out.write(bytes.length);
+        for (int b : bytes) {
+            out.write(b);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] withHeader(int... bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(HEADER);
+        for (int b : bytes) {
+            out.write(b);
+        }
+        return out.toByteArray();
+    }
+}